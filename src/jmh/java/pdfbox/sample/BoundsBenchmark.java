@@ -0,0 +1,74 @@
+package pdfbox.sample;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.apache.pdfbox.text.TextPosition;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/** Run bounds computation of {@link TextRunStripper} over all runs of one page. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BoundsBenchmark {
+
+  @Param({"TEXT_DENSE", "MANY_FONTS", "ROTATED", "TYPE3"})
+  public Corpus.Kind kind;
+
+  private PDDocument document;
+  private TextRunStripper stripper;
+  private List<List<TextPosition>> runs;
+
+  @Setup
+  public void setUp() throws IOException {
+    document = PDDocument.load(Corpus.generate(kind));
+    // rotated pages start at 90 degrees on the second page
+    int page = kind == Corpus.Kind.ROTATED ? 1 : 0;
+
+    runs = new ArrayList<>();
+    PDFTextStripper collector =
+        new PDFTextStripper() {
+          @Override
+          protected void writeString(String text, List<TextPosition> textPositions) {
+            runs.add(new ArrayList<>(textPositions));
+          }
+        };
+    collector.setSortByPosition(true);
+    collector.setStartPage(page + 1);
+    collector.setEndPage(page + 1);
+    collector.writeText(document, NullWriter.INSTANCE);
+
+    stripper = new TextRunStripper();
+    stripper.preparePage(document.getPage(page));
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    document.close();
+  }
+
+  @Benchmark
+  public void getBounds(Blackhole blackhole) {
+    for (List<TextPosition> run : runs) {
+      blackhole.consume(stripper.getBounds(run));
+    }
+  }
+}
@@ -0,0 +1,166 @@
+package pdfbox.sample;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import org.apache.pdfbox.cos.COSArray;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSFloat;
+import org.apache.pdfbox.cos.COSInteger;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSStream;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDResources;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.common.PDStream;
+import org.apache.pdfbox.pdmodel.font.PDFont;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.font.PDType3Font;
+
+/** Generates the synthetic documents the benchmarks run over. */
+public final class Corpus {
+
+  /** Pages per generated document, benchmarks report per page throughput. */
+  static final int PAGES = 10;
+
+  private static final String WORDS =
+      "the quick brown fox jumps over the lazy dog 0123456789 invoice total amount due ";
+
+  private static final PDType1Font[] FONTS = {
+    PDType1Font.HELVETICA,
+    PDType1Font.HELVETICA_BOLD,
+    PDType1Font.HELVETICA_OBLIQUE,
+    PDType1Font.HELVETICA_BOLD_OBLIQUE,
+    PDType1Font.TIMES_ROMAN,
+    PDType1Font.TIMES_BOLD,
+    PDType1Font.TIMES_ITALIC,
+    PDType1Font.TIMES_BOLD_ITALIC,
+    PDType1Font.COURIER,
+    PDType1Font.COURIER_BOLD,
+    PDType1Font.COURIER_OBLIQUE,
+    PDType1Font.COURIER_BOLD_OBLIQUE
+  };
+
+  public enum Kind {
+    /** Small type, full lines, a colour change per line. */
+    TEXT_DENSE,
+    /** A different standard 14 font on every line. */
+    MANY_FONTS,
+    /** Pages rotated by 90, 180 and 270 degrees. */
+    ROTATED,
+    /** Text shown with a Type3 font. */
+    TYPE3
+  }
+
+  private Corpus() {}
+
+  static byte[] generate(Kind kind) throws IOException {
+    try (PDDocument document = new PDDocument()) {
+      PDFont type3 = kind == Kind.TYPE3 ? createType3Font(document) : null;
+
+      for (int p = 0; p < PAGES; ++p) {
+        PDPage page = new PDPage(PDRectangle.LETTER);
+        page.setResources(new PDResources());
+        if (kind == Kind.ROTATED) {
+          page.setRotation(90 * (p % 4));
+        }
+        document.addPage(page);
+
+        StringBuilder content = new StringBuilder();
+        int lines = kind == Kind.TEXT_DENSE ? 110 : 50;
+        float fontSize = kind == Kind.TEXT_DENSE ? 6 : 12;
+        for (int line = 0; line < lines; ++line) {
+          PDFont font;
+          if (type3 != null) {
+            font = type3;
+          } else if (kind == Kind.MANY_FONTS) {
+            font = FONTS[line % FONTS.length];
+          } else {
+            font = PDType1Font.HELVETICA;
+          }
+          COSName fontName = page.getResources().add(font);
+
+          content.append("BT\n");
+          content.append(String.format(Locale.ROOT, "%.3f 0 0 rg\n", (line % 10) / 10f));
+          content.append('/').append(fontName.getName()).append(' ').append(fontSize);
+          content.append(" Tf\n");
+          content.append(String.format(Locale.ROOT, "1 0 0 1 36 %.2f Tm\n", 756 - line * 6.5f));
+          content.append('(').append(lineText(kind, p, line)).append(") Tj\nET\n");
+        }
+
+        PDStream contents = new PDStream(document);
+        try (OutputStream out = contents.createOutputStream(COSName.FLATE_DECODE)) {
+          out.write(content.toString().getBytes(StandardCharsets.US_ASCII));
+        }
+        page.setContents(contents);
+      }
+
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      document.save(out);
+      return out.toByteArray();
+    }
+  }
+
+  private static String lineText(Kind kind, int page, int line) {
+    if (kind == Kind.TYPE3) {
+      // the Type3 font only has glyphs for A-Z
+      StringBuilder text = new StringBuilder();
+      for (int i = 0; i < 60; ++i) {
+        text.append((char) ('A' + (page + line + i) % 26));
+      }
+      return text.toString();
+    }
+    int length = kind == Kind.TEXT_DENSE ? 160 : 80;
+    StringBuilder text = new StringBuilder(length);
+    int offset = (page * 31 + line * 7) % WORDS.length();
+    while (text.length() < length) {
+      text.append(WORDS, offset, WORDS.length());
+      offset = 0;
+    }
+    text.setLength(length);
+    return text.toString();
+  }
+
+  // a Type3 font whose glyphs A-Z are filled squares
+  private static PDType3Font createType3Font(PDDocument document) throws IOException {
+    COSDictionary charProcs = new COSDictionary();
+    COSArray differences = new COSArray();
+    COSArray widths = new COSArray();
+    differences.add(COSInteger.get('A'));
+    for (char c = 'A'; c <= 'Z'; ++c) {
+      String name = String.valueOf(c);
+      COSStream charProc = document.getDocument().createCOSStream();
+      try (OutputStream out = charProc.createOutputStream()) {
+        out.write("750 0 0 0 700 700 d1\n0 0 700 700 re f\n".getBytes(StandardCharsets.US_ASCII));
+      }
+      charProcs.setItem(name, charProc);
+      differences.add(COSName.getPDFName(name));
+      widths.add(COSInteger.get(750));
+    }
+
+    COSDictionary encoding = new COSDictionary();
+    encoding.setItem(COSName.TYPE, COSName.ENCODING);
+    encoding.setItem(COSName.DIFFERENCES, differences);
+
+    COSArray fontMatrix = new COSArray();
+    for (float f : new float[] {0.001f, 0, 0, 0.001f, 0, 0}) {
+      fontMatrix.add(new COSFloat(f));
+    }
+
+    COSDictionary font = new COSDictionary();
+    font.setItem(COSName.TYPE, COSName.FONT);
+    font.setItem(COSName.SUBTYPE, COSName.TYPE3);
+    font.setItem(COSName.FONT_BBOX, new PDRectangle(0, 0, 750, 700));
+    font.setItem(COSName.FONT_MATRIX, fontMatrix);
+    font.setItem(COSName.CHAR_PROCS, charProcs);
+    font.setItem(COSName.ENCODING, encoding);
+    font.setInt(COSName.FIRST_CHAR, 'A');
+    font.setInt(COSName.LAST_CHAR, 'Z');
+    font.setItem(COSName.WIDTHS, widths);
+    font.setItem(COSName.RESOURCES, new COSDictionary());
+    return new PDType3Font(font);
+  }
+}
@@ -0,0 +1,131 @@
+package pdfbox.sample;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Throughput and latency of {@link ExtractionService} under many concurrent small requests. Run
+ * with {@code ./gradlew loadBenchmark -PloadArgs="virtual 2000 30"}.
+ *
+ * <p>The stand-in client keeps {@code clients} requests in flight: whenever one completes it
+ * records the latency and immediately sends the next, until the duration is over. The first
+ * quarter of the duration is warm up and not recorded.
+ *
+ * <p>Arguments: {@code [virtual|platform] [clients] [seconds] [maxConcurrentParses] [perPage]
+ * [kind]}
+ */
+public class LoadBenchmark {
+
+  public static void main(String[] args) throws Exception {
+    boolean useVirtualThreads = !"platform".equals(arg(args, 0, "virtual"));
+    int clients = Integer.parseInt(arg(args, 1, "1000"));
+    int seconds = Integer.parseInt(arg(args, 2, "20"));
+    int maxConcurrentParses =
+        Integer.parseInt(
+            arg(args, 3, Integer.toString(Runtime.getRuntime().availableProcessors())));
+    boolean perPage = Boolean.parseBoolean(arg(args, 4, "false"));
+    Corpus.Kind kind = Corpus.Kind.valueOf(arg(args, 5, "TEXT_DENSE"));
+
+    DocumentSource source = DocumentSource.of(Corpus.generate(kind));
+    try (ExtractionService service =
+        new ExtractionService(useVirtualThreads, maxConcurrentParses, perPage)) {
+      System.out.printf(
+          Locale.ROOT,
+          "%s threads, %d clients, %d concurrent parses, perPage=%b, %s%n",
+          service.isVirtual() ? "virtual" : "platform",
+          clients,
+          maxConcurrentParses,
+          perPage,
+          kind);
+
+      Client client = new Client(service, source, seconds);
+      client.run(clients);
+      client.report();
+    }
+  }
+
+  private static String arg(String[] args, int index, String defaultValue) {
+    return args.length > index ? args[index] : defaultValue;
+  }
+
+  private static final class Client {
+    private final ExtractionService service;
+    private final DocumentSource source;
+    private final long measureFrom;
+    private final long end;
+    private final AtomicInteger failed = new AtomicInteger();
+    private long[] latencies = new long[1 << 16];
+    private int count;
+    private CountDownLatch done;
+
+    Client(ExtractionService service, DocumentSource source, int seconds) {
+      this.service = service;
+      this.source = source;
+      long start = System.nanoTime();
+      this.measureFrom = start + TimeUnit.SECONDS.toNanos(seconds) / 4;
+      this.end = start + TimeUnit.SECONDS.toNanos(seconds);
+    }
+
+    void run(int clients) throws InterruptedException {
+      done = new CountDownLatch(clients);
+      for (int i = 0; i < clients; ++i) {
+        send();
+      }
+      done.await();
+    }
+
+    private void send() {
+      long sent = System.nanoTime();
+      service
+          .submit(source)
+          .whenComplete(
+              (result, error) -> {
+                long received = System.nanoTime();
+                if (error != null) {
+                  failed.incrementAndGet();
+                } else if (sent >= measureFrom) {
+                  record(received - sent);
+                }
+                if (received < end) {
+                  send();
+                } else {
+                  done.countDown();
+                }
+              });
+    }
+
+    private synchronized void record(long latency) {
+      if (count == latencies.length) {
+        latencies = Arrays.copyOf(latencies, 2 * count);
+      }
+      latencies[count++] = latency;
+    }
+
+    synchronized void report() {
+      long[] sorted = Arrays.copyOf(latencies, count);
+      Arrays.sort(sorted);
+      double seconds = (end - measureFrom) / 1e9;
+      System.out.printf(
+          Locale.ROOT,
+          "%d requests in %.1f s: %.1f requests/s, p50 %.1f ms, p99 %.1f ms, max %.1f ms, "
+              + "%d failed%n",
+          count,
+          seconds,
+          count / seconds,
+          percentile(sorted, 0.50),
+          percentile(sorted, 0.99),
+          count == 0 ? 0 : sorted[count - 1] / 1e6,
+          failed.get());
+    }
+
+    private static double percentile(long[] sorted, double p) {
+      if (sorted.length == 0) {
+        return 0;
+      }
+      return sorted[(int) Math.min(sorted.length - 1, Math.ceil(p * sorted.length) - 1)] / 1e6;
+    }
+  }
+}
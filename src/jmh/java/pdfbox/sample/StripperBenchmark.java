@@ -0,0 +1,90 @@
+package pdfbox.sample;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Whole document extraction throughput, reported in pages per second. Run with {@code ./gradlew
+ * jmh}, which also attaches the GC profiler for allocation rates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@OperationsPerInvocation(Corpus.PAGES)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StripperBenchmark {
+
+  @Param({"TEXT_DENSE", "MANY_FONTS", "ROTATED", "TYPE3"})
+  public Corpus.Kind kind;
+
+  private byte[] input;
+  private PrintStream stdout;
+
+  @Setup
+  public void setUp() throws IOException {
+    input = Corpus.generate(kind);
+
+    // ColorTextStripper and ExtractTextSimple print their result, don't measure the console
+    stdout = System.out;
+    System.setOut(
+        new PrintStream(
+            new OutputStream() {
+              @Override
+              public void write(int b) {}
+
+              @Override
+              public void write(byte[] b, int off, int len) {}
+            }));
+  }
+
+  @TearDown
+  public void tearDown() {
+    System.setOut(stdout);
+  }
+
+  /** The extraction profile of {@link #textRunStripperProfile}, the other benchmarks ignore it. */
+  @State(Scope.Benchmark)
+  public static class Profile {
+    @Param({"TEXT_ONLY", "TEXT_BOXES", "FULL_STYLE"})
+    public ExtractionProfile profile;
+  }
+
+  @Benchmark
+  public List<List<TextRun>> textRunStripper() throws IOException {
+    return TextRunStripper.processPdf(input);
+  }
+
+  @Benchmark
+  public List<List<TextRun>> textRunStripperProfile(Profile profile) throws IOException {
+    return TextRunStripper.processPdf(
+        DocumentSource.of(input), PageSelection.ALL, profile.profile);
+  }
+
+  @Benchmark
+  public void colorTextStripper() throws IOException {
+    ColorTextStripper.processPdf(input);
+  }
+
+  @Benchmark
+  public void extractTextSimple() throws IOException {
+    ExtractTextSimple.processPdf(input);
+  }
+}
@@ -5,24 +5,118 @@ package pdfbox.sample;
 
 import java.io.IOException;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.apache.pdfbox.io.MemoryUsageSetting;
 
 public class App {
 
-  public static void main(String[] args) throws IOException {
+  // heap kept for parsed document data, override with -DmaxMainMemoryBytes
+  private static final long DEFAULT_MAX_MAIN_MEMORY_BYTES = 64L * 1024 * 1024;
+
+  /**
+   * {@code App <file.pdf> [parallelism]} prints the text runs of one document. With {@code
+   * -DtextRunCacheDir=<dir>} they are served from and stored in a {@link TextRunCache} there,
+   * sequentially.
+   *
+   * <p>{@code App --batch <dir|glob|@manifest> <outputDir> [runs|binary|text|colors]
+   * [threads] [timeoutSeconds]} extracts many documents into one result file each.
+   *
+   * <p>{@code -Dmetrics=json} logs the metrics of every page and document to stderr, {@code
+   * -Dmetrics=histogram} prints their percentiles there at the end.
+   */
+  public static void main(String[] args) throws IOException, InterruptedException {
     setupFlags();
-    byte[] input = Files.readAllBytes(Paths.get(args[0]));
-    System.out.println(input.length);
-    List<List<TextRun>> pagedTextRuns = TextRunStripper.processPdf(input);
+    HistogramMetricsSink histogram = setupMetrics();
+    try {
+      run(args);
+    } finally {
+      if (histogram != null) {
+        System.err.print(histogram);
+      }
+    }
+  }
+
+  private static void run(String[] args) throws IOException, InterruptedException {
+    if ("--batch".equals(args[0])) {
+      batch(args);
+      return;
+    }
+    Path input = Paths.get(args[0]);
+    System.out.println(Files.size(input));
+    int parallelism = args.length > 1 ? Integer.parseInt(args[1]) : 1;
+    String cacheDir = System.getProperty("textRunCacheDir");
+    List<List<TextRun>> pagedTextRuns;
+    if (cacheDir != null) {
+      TextRunCache cache =
+          new TextRunCache(
+              Paths.get(cacheDir),
+              Long.getLong("textRunCacheBytes", TextRunCache.DEFAULT_MAX_BYTES));
+      pagedTextRuns = cache.processPdf(input, memUsageSetting());
+      System.err.println(cache);
+    } else {
+      pagedTextRuns = TextRunStripper.processPdf(input, memUsageSetting(), parallelism);
+    }
     printTextRuns(pagedTextRuns);
   }
 
+  private static void batch(String[] args) throws IOException, InterruptedException {
+    List<Path> inputs = BatchExtractor.findInputs(args[1]);
+    Path outputDir = Paths.get(args[2]);
+    String mode = args.length > 3 ? args[3] : "runs";
+    int threads =
+        args.length > 4 ? Integer.parseInt(args[4]) : Runtime.getRuntime().availableProcessors();
+    long timeoutSeconds = args.length > 5 ? Long.parseLong(args[5]) : 300;
+
+    MemoryUsageSetting memUsageSetting = memUsageSetting();
+    BatchExtractor.Extraction extraction;
+    String outputSuffix = ".txt";
+    switch (mode) {
+      case "runs":
+        extraction = BatchExtractor.textRuns(memUsageSetting);
+        break;
+      case "binary":
+        extraction = BatchExtractor.encodedTextRuns(memUsageSetting);
+        outputSuffix = ".runs";
+        break;
+      case "text":
+        extraction = BatchExtractor.plainText(memUsageSetting);
+        break;
+      case "colors":
+        extraction = BatchExtractor.colorText(memUsageSetting);
+        break;
+      default:
+        throw new IllegalArgumentException("Unknown batch mode: " + mode);
+    }
+
+    BatchExtractor batch =
+        new BatchExtractor(
+            extraction,
+            outputSuffix,
+            threads,
+            2 * threads,
+            TimeUnit.SECONDS.toMillis(timeoutSeconds));
+    System.out.println(batch.run(inputs, outputDir));
+  }
+
+  private static MemoryUsageSetting memUsageSetting() {
+    return MemoryUsageSetting.setupMixed(
+        Long.getLong("maxMainMemoryBytes", DEFAULT_MAX_MAIN_MEMORY_BYTES));
+  }
+
   private static void setupFlags() {
     System.setProperty("sun.java2d.cmm", "sun.java2d.cmm.kcms.KcmsServiceProvider");
     System.setProperty("org.apache.pdfbox.rendering.UsePureJavaCMYKConversion", "true");
   }
 
+  // the histogram sink, to print at the end, if that is the one installed
+  private static HistogramMetricsSink setupMetrics() {
+    MetricsSink sink = Metrics.getDefaultSink();
+    return sink instanceof HistogramMetricsSink ? (HistogramMetricsSink) sink : null;
+  }
+
   private static void printTextRuns(List<List<TextRun>> pagedTextRuns) {
     pagedTextRuns.forEach(textRuns -> textRuns.forEach(t -> System.out.println(t.text)));
   }
@@ -0,0 +1,344 @@
+package pdfbox.sample;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.apache.pdfbox.io.MemoryUsageSetting;
+
+/**
+ * Runs an extraction over many documents in one JVM.
+ *
+ * <p>Documents go to a fixed pool of workers. At most {@code threads + queueCapacity} documents are
+ * submitted but not yet finished, beyond that the producer blocks. A document still running when
+ * its timeout expires has its worker interrupted and its result discarded. PDFBox itself does not
+ * check for interruption, so the worker only becomes free once the parser returns.
+ */
+public class BatchExtractor {
+
+  /** Extracts one document and writes its result to a file. */
+  @FunctionalInterface
+  public interface Extraction {
+
+    /** @return the number of pages processed */
+    int extract(Path input, Path output) throws IOException;
+  }
+
+  private final Extraction extraction;
+  private final String outputSuffix;
+  private final int threads;
+  private final int queueCapacity;
+  private final long timeoutMillis;
+
+  /**
+   * @param outputSuffix appended to the input's path, relative to the inputs' common directory, to
+   *     name its result below the output directory; inputs on different roots, which have no common
+   *     directory, by their file names
+   * @param queueCapacity documents waiting for a worker before the producer blocks
+   */
+  public BatchExtractor(
+      Extraction extraction,
+      String outputSuffix,
+      int threads,
+      int queueCapacity,
+      long timeoutMillis) {
+    this.extraction = extraction;
+    this.outputSuffix = outputSuffix;
+    this.threads = threads;
+    this.queueCapacity = queueCapacity;
+    this.timeoutMillis = timeoutMillis;
+  }
+
+  /** One line of text per {@link TextRun}, streamed page by page. */
+  public static Extraction textRuns(MemoryUsageSetting memUsageSetting) {
+    return (input, output) -> {
+      int[] pages = {0};
+      try (Writer out = Files.newBufferedWriter(output, StandardCharsets.UTF_8)) {
+        TextRunStripper.processPdf(
+            input,
+            memUsageSetting,
+            (page, textRuns) -> {
+              pages[0]++;
+              for (TextRun textRun : textRuns) {
+                out.write(textRun.text);
+                out.write('\n');
+              }
+            });
+      }
+      return pages[0];
+    };
+  }
+
+  /** All fields of every {@link TextRun}, written by {@link TextRunEncoder}. */
+  public static Extraction encodedTextRuns(MemoryUsageSetting memUsageSetting) {
+    return (input, output) -> {
+      int[] pages = {0};
+      try (TextRunEncoder encoder =
+          new TextRunEncoder(new BufferedOutputStream(Files.newOutputStream(output)))) {
+        TextRunStripper.processPdf(
+            input,
+            memUsageSetting,
+            (page, textRuns) -> {
+              pages[0]++;
+              encoder.onPage(page, textRuns);
+            });
+      }
+      return pages[0];
+    };
+  }
+
+  /** The output of {@link ExtractTextSimple}. */
+  public static Extraction plainText(MemoryUsageSetting memUsageSetting) {
+    return (input, output) -> {
+      try (Writer out = Files.newBufferedWriter(output, StandardCharsets.UTF_8)) {
+        return ExtractTextSimple.processPdf(input, memUsageSetting, out);
+      }
+    };
+  }
+
+  /** The output of {@link ColorTextStripper}. */
+  public static Extraction colorText(MemoryUsageSetting memUsageSetting) {
+    return (input, output) -> {
+      try (Writer out = Files.newBufferedWriter(output, StandardCharsets.UTF_8)) {
+        return ColorTextStripper.processPdf(input, memUsageSetting, out);
+      }
+    };
+  }
+
+  /**
+   * Resolves the documents to process.
+   *
+   * @param spec a directory, searched recursively for *.pdf files, a glob such as {@code
+   *     in/**.pdf}, or {@code @manifest.txt} naming one document per line
+   */
+  public static List<Path> findInputs(String spec) throws IOException {
+    if (spec.startsWith("@")) {
+      try (Stream<String> lines = Files.lines(Paths.get(spec.substring(1)))) {
+        return lines
+            .map(String::trim)
+            .filter(line -> !line.isEmpty() && !line.startsWith("#"))
+            .map(Paths::get)
+            .collect(Collectors.toList());
+      }
+    }
+
+    Path base;
+    PathMatcher matcher;
+    int glob = indexOfGlob(spec);
+    if (glob >= 0) {
+      int separator = Math.max(spec.lastIndexOf('/', glob), spec.lastIndexOf('\\', glob));
+      base = Paths.get(separator < 0 ? "." : spec.substring(0, separator + 1));
+      matcher = FileSystems.getDefault().getPathMatcher("glob:" + spec);
+    } else {
+      base = Paths.get(spec);
+      matcher = path -> path.toString().toLowerCase(Locale.ROOT).endsWith(".pdf");
+    }
+
+    try (Stream<Path> files = Files.walk(base)) {
+      // globs without a directory are matched against "name", not "./name"
+      return files
+          .filter(Files::isRegularFile)
+          .map(path -> glob >= 0 && base.equals(Paths.get(".")) ? base.relativize(path) : path)
+          .filter(matcher::matches)
+          .sorted()
+          .collect(Collectors.toList());
+    }
+  }
+
+  private static int indexOfGlob(String spec) {
+    for (int i = 0; i < spec.length(); ++i) {
+      if ("*?[{".indexOf(spec.charAt(i)) >= 0) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  public Summary run(List<Path> inputs, Path outputDir) throws IOException, InterruptedException {
+    List<Path> documents = new ArrayList<>(inputs.size());
+    for (Path input : inputs) {
+      documents.add(input.toAbsolutePath().normalize());
+    }
+    Path root = commonDirectory(documents);
+
+    Summary summary = new Summary();
+    ExecutorService workers = Executors.newFixedThreadPool(threads);
+    ScheduledExecutorService watchdog =
+        Executors.newSingleThreadScheduledExecutor(
+            r -> {
+              Thread thread = new Thread(r, "batch-watchdog");
+              thread.setDaemon(true);
+              return thread;
+            });
+    Semaphore pending = new Semaphore(threads + queueCapacity);
+    long start = System.nanoTime();
+    try {
+      for (Path input : documents) {
+        Path relative = root != null ? root.relativize(input) : input.getFileName();
+        Path output = outputDir.resolve(relative.toString() + outputSuffix);
+        pending.acquire();
+        workers.execute(
+            () -> {
+              try {
+                process(input, output, watchdog, summary);
+              } finally {
+                pending.release();
+              }
+            });
+      }
+      workers.shutdown();
+      workers.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    } finally {
+      workers.shutdownNow();
+      watchdog.shutdownNow();
+    }
+    summary.elapsedNanos = System.nanoTime() - start;
+    return summary;
+  }
+
+  private void process(
+      Path input, Path output, ScheduledExecutorService watchdog, Summary summary) {
+    Deadline deadline = new Deadline(Thread.currentThread());
+    ScheduledFuture<?> timer =
+        watchdog.schedule(deadline::expire, timeoutMillis, TimeUnit.MILLISECONDS);
+    try {
+      Files.createDirectories(output.getParent());
+      int pages = extraction.extract(input, output);
+      if (deadline.finish()) {
+        summary.documents.increment();
+        summary.pages.add(pages);
+      } else {
+        timedOut(input, output, summary);
+      }
+    } catch (IOException | RuntimeException | StackOverflowError e) {
+      // deeply nested forms or a cyclic page tree overflow the stack of PDFBox's recursion, the
+      // worker survives that and moves on to the next document
+      if (deadline.finish()) {
+        summary.failed.increment();
+        System.err.println("Failed " + input + ": " + e);
+        discard(output);
+      } else {
+        timedOut(input, output, summary);
+      }
+    } finally {
+      timer.cancel(false);
+      // an expired deadline may have interrupted us, the next document must not see that
+      Thread.interrupted();
+    }
+  }
+
+  private void timedOut(Path input, Path output, Summary summary) {
+    summary.timedOut.increment();
+    System.err.println("Timed out after " + timeoutMillis + " ms: " + input);
+    discard(output);
+  }
+
+  private static void discard(Path output) {
+    try {
+      Files.deleteIfExists(output);
+    } catch (IOException e) {
+      e.printStackTrace();
+    }
+  }
+
+  // null if the paths are on different roots, e.g. Windows drives
+  private static Path commonDirectory(List<Path> paths) {
+    if (paths.isEmpty()) {
+      return null;
+    }
+    Path common = paths.get(0).getParent();
+    for (Path path : paths) {
+      Path parent = path.getParent();
+      while (common != null && !parent.startsWith(common)) {
+        common = common.getParent();
+      }
+    }
+    return common;
+  }
+
+  // interrupts the worker if its document is still running when the timeout expires
+  private static final class Deadline {
+    private final Thread worker;
+    private boolean finished;
+    private boolean expired;
+
+    Deadline(Thread worker) {
+      this.worker = worker;
+    }
+
+    synchronized void expire() {
+      if (!finished) {
+        expired = true;
+        worker.interrupt();
+      }
+    }
+
+    /** @return false if the deadline expired first */
+    synchronized boolean finish() {
+      finished = true;
+      return !expired;
+    }
+  }
+
+  /** Aggregate counts and throughput of a batch run. */
+  public static final class Summary {
+    final LongAdder documents = new LongAdder();
+    final LongAdder pages = new LongAdder();
+    final LongAdder failed = new LongAdder();
+    final LongAdder timedOut = new LongAdder();
+    long elapsedNanos;
+
+    public long getDocuments() {
+      return documents.sum();
+    }
+
+    public long getPages() {
+      return pages.sum();
+    }
+
+    public long getFailed() {
+      return failed.sum();
+    }
+
+    public long getTimedOut() {
+      return timedOut.sum();
+    }
+
+    public long getElapsedNanos() {
+      return elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+      double seconds = elapsedNanos / 1e9;
+      return String.format(
+          Locale.ROOT,
+          "%d documents, %d pages in %.1f s (%.1f documents/s, %.1f pages/s), "
+              + "%d failed, %d timed out",
+          getDocuments(),
+          getPages(),
+          seconds,
+          getDocuments() / seconds,
+          getPages() / seconds,
+          getFailed(),
+          getTimedOut());
+    }
+  }
+}
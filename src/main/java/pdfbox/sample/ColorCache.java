@@ -0,0 +1,163 @@
+package pdfbox.sample;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import org.apache.pdfbox.pdmodel.graphics.color.PDColor;
+import org.apache.pdfbox.pdmodel.graphics.color.PDColorSpace;
+import org.apache.pdfbox.pdmodel.graphics.color.PDPattern;
+
+/**
+ * Per document memo of {@link PDColor#toRGB()}: the RGB value of each colour space and components
+ * seen, so that ICC based, Separation and DeviceN colours go through the colour management module
+ * once per distinct colour instead of once per glyph.
+ *
+ * <p>Colour spaces are keyed by the identity of their PDF object, which the resources share
+ * between pages, components by value in a bounded open addressing table per colour space. Pattern
+ * colours are converted every time.
+ */
+final class ColorCache {
+
+  static final int MAX_SPACES = 256;
+
+  private final Map<Object, SpaceColors> spaces = new IdentityHashMap<>();
+
+  // PDColor is immutable and the graphics state keeps the same instance until the colour is set,
+  // so the stroking and non-stroking colours of consecutive glyphs are mostly the last two seen
+  private final PDColor[] lastColors = new PDColor[2];
+  private final int[] lastRgb = new int[2];
+  private int lastNext;
+
+  int toRGB(PDColor color) throws IOException {
+    if (color == lastColors[0]) {
+      return lastRgb[0];
+    }
+    if (color == lastColors[1]) {
+      return lastRgb[1];
+    }
+
+    PDColorSpace colorSpace = color.getColorSpace();
+    int rgb;
+    if (colorSpace == null || colorSpace instanceof PDPattern) {
+      rgb = color.toRGB();
+    } else {
+      rgb = colors(colorSpace).toRGB(color);
+    }
+    lastColors[lastNext] = color;
+    lastRgb[lastNext] = rgb;
+    lastNext ^= 1;
+    return rgb;
+  }
+
+  void clear() {
+    spaces.clear();
+    Arrays.fill(lastColors, null);
+    lastNext = 0;
+  }
+
+  private SpaceColors colors(PDColorSpace colorSpace) {
+    Object key = colorSpace.getCOSObject() != null ? colorSpace.getCOSObject() : colorSpace;
+    SpaceColors colors = spaces.get(key);
+    if (colors == null) {
+      if (spaces.size() == MAX_SPACES) {
+        spaces.clear();
+      }
+      colors = new SpaceColors(colorSpace.getNumberOfComponents());
+      spaces.put(key, colors);
+    }
+    return colors;
+  }
+
+  private static final class SpaceColors {
+
+    static final int MAX_COLORS = 1024;
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final int stride;
+
+    // per colour its components as in PDColor.getComponents() and its RGB value
+    private float[] components;
+    private int[] rgb;
+    private int size;
+
+    // colour + 1 per slot, 0 marks a free slot; kept at most half full
+    private int[] slots = new int[2 * INITIAL_CAPACITY];
+
+    SpaceColors(int stride) {
+      this.stride = stride;
+      components = new float[stride * INITIAL_CAPACITY];
+      rgb = new int[INITIAL_CAPACITY];
+    }
+
+    int toRGB(PDColor color) throws IOException {
+      float[] key = color.getComponents();
+      int mask = slots.length - 1;
+      int i = slot(key, 0, key.length, mask);
+      for (; slots[i] != 0; i = (i + 1) & mask) {
+        int entry = slots[i] - 1;
+        if (matches(entry, key)) {
+          return rgb[entry];
+        }
+      }
+
+      int value = color.toRGB();
+      if (key.length == stride) {
+        if (size == MAX_COLORS) {
+          // full, start over rather than track which colours are still in use
+          Arrays.fill(slots, 0);
+          size = 0;
+        } else if (size == rgb.length) {
+          grow();
+        }
+        int entry = size++;
+        System.arraycopy(key, 0, components, stride * entry, stride);
+        rgb[entry] = value;
+        insert(entry);
+      }
+      return value;
+    }
+
+    private boolean matches(int entry, float[] key) {
+      if (key.length != stride) {
+        return false;
+      }
+      int offset = stride * entry;
+      for (int c = 0; c < stride; ++c) {
+        if (Float.floatToIntBits(components[offset + c]) != Float.floatToIntBits(key[c])) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    private void insert(int entry) {
+      int mask = slots.length - 1;
+      int i = slot(components, stride * entry, stride, mask);
+      while (slots[i] != 0) {
+        i = (i + 1) & mask;
+      }
+      slots[i] = entry + 1;
+    }
+
+    private void grow() {
+      int capacity = Math.min(2 * rgb.length, MAX_COLORS);
+      components = Arrays.copyOf(components, stride * capacity);
+      rgb = Arrays.copyOf(rgb, capacity);
+
+      slots = new int[2 * capacity];
+      for (int entry = 0; entry < size; ++entry) {
+        insert(entry);
+      }
+    }
+
+    private static int slot(float[] values, int offset, int length, int mask) {
+      int h = 1;
+      for (int c = offset; c < offset + length; ++c) {
+        h = 31 * h + Float.floatToIntBits(values[c]);
+      }
+      h *= 0x9E3779B9;
+      return (h ^ (h >>> 16)) & mask;
+    }
+  }
+}
@@ -1,10 +1,23 @@
 package pdfbox.sample;
 
+import java.io.CharArrayWriter;
 import java.io.IOException;
-import java.util.Arrays;
-import java.util.HashMap;
+import java.io.InterruptedIOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
 import java.util.List;
-import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import org.apache.pdfbox.contentstream.operator.color.SetNonStrokingColor;
 import org.apache.pdfbox.contentstream.operator.color.SetNonStrokingColorN;
 import org.apache.pdfbox.contentstream.operator.color.SetNonStrokingColorSpace;
@@ -17,37 +30,58 @@ import org.apache.pdfbox.contentstream.operator.color.SetStrokingColorSpace;
 import org.apache.pdfbox.contentstream.operator.color.SetStrokingDeviceCMYKColor;
 import org.apache.pdfbox.contentstream.operator.color.SetStrokingDeviceGrayColor;
 import org.apache.pdfbox.contentstream.operator.color.SetStrokingDeviceRGBColor;
+import org.apache.pdfbox.io.MemoryUsageSetting;
 import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.graphics.color.PDColor;
+import org.apache.pdfbox.pdmodel.graphics.state.PDGraphicsState;
 import org.apache.pdfbox.pdmodel.graphics.state.RenderingMode;
-import org.apache.pdfbox.text.PDFTextStripper;
 import org.apache.pdfbox.text.TextPosition;
 
-public class ColorTextStripper extends PDFTextStripper {
+public class ColorTextStripper extends PageTreeStripper {
 
-  static final List<RenderingMode> FILLING_MODES =
-      Arrays.asList(
+  static final Set<RenderingMode> FILLING_MODES =
+      EnumSet.of(
           RenderingMode.FILL,
           RenderingMode.FILL_STROKE,
           RenderingMode.FILL_CLIP,
           RenderingMode.FILL_STROKE_CLIP);
 
-  static final List<RenderingMode> STROKING_MODES =
-      Arrays.asList(
+  static final Set<RenderingMode> STROKING_MODES =
+      EnumSet.of(
           RenderingMode.STROKE,
           RenderingMode.FILL_STROKE,
           RenderingMode.STROKE_CLIP,
           RenderingMode.FILL_STROKE_CLIP);
 
-  static final List<RenderingMode> CLIPPING_MODES =
-      Arrays.asList(
+  static final Set<RenderingMode> CLIPPING_MODES =
+      EnumSet.of(
           RenderingMode.FILL_CLIP,
           RenderingMode.STROKE_CLIP,
           RenderingMode.FILL_STROKE_CLIP,
           RenderingMode.NEITHER_CLIP);
 
-  Map<TextPosition, RenderingMode> renderingMode = new HashMap<>();
-  Map<TextPosition, float[]> strokingColor = new HashMap<>();
-  Map<TextPosition, float[]> nonStrokingColor = new HashMap<>();
+  // pages with their output not yet written, per worker thread, of processPdf with parallelism
+  private static final int PAGES_PER_THREAD = 2;
+
+  private final GlyphStateStore glyphState = new GlyphStateStore();
+
+  // the text of one writeString call, written to the output at once
+  private final StringBuilder buffer = new StringBuilder();
+  private char[] chars = new char[256];
+
+  // PDColor is immutable and mostly the same instance glyph after glyph, so the text of the last
+  // two colours formatted is kept, see ColorCache
+  private final PDColor[] lastColors = new PDColor[2];
+  private final String[] lastText = new String[2];
+  private int lastNext;
+
+  private int[] pages;
+
+  // null unless metrics are recorded, see MetricsRecorder
+  private MetricsRecorder metrics;
+  private Metrics pageMetrics;
+  private long pageStart;
 
   public ColorTextStripper() throws IOException {
     super();
@@ -67,40 +101,88 @@ public class ColorTextStripper extends PDFTextStripper {
     addOperator(new SetNonStrokingColorN());
   }
 
+  @Override
+  protected void startPage(PDPage page) throws IOException {
+    if (metrics != null) {
+      pageMetrics = metrics.startPage();
+      pageStart = System.nanoTime();
+    }
+    glyphState.clear();
+    super.startPage(page);
+  }
+
+  @Override
+  protected void endPage(PDPage page) throws IOException {
+    super.endPage(page);
+    if (pageMetrics != null) {
+      pageMetrics.add(Metrics.Metric.INTERPRET_NANOS, System.nanoTime() - pageStart);
+      metrics.endPage(pages[getCurrentPageNo() - 1], pageMetrics);
+      pageMetrics = null;
+    }
+  }
+
   @Override
   protected void processTextPosition(TextPosition text) {
-    renderingMode.put(text, getGraphicsState().getTextState().getRenderingMode());
-    strokingColor.put(text, getGraphicsState().getStrokingColor().getComponents());
-    nonStrokingColor.put(text, getGraphicsState().getNonStrokingColor().getComponents());
+    if (pageMetrics != null) {
+      pageMetrics.increment(Metrics.Metric.GLYPHS);
+    }
+    PDGraphicsState graphicsState = getGraphicsState();
+    glyphState.add(
+        text,
+        graphicsState.getTextState().getRenderingMode(),
+        graphicsState.getStrokingColor(),
+        graphicsState.getNonStrokingColor());
 
     super.processTextPosition(text);
   }
 
   @Override
   protected void writeString(String text, List<TextPosition> textPositions) throws IOException {
+    if (pageMetrics != null) {
+      pageMetrics.increment(Metrics.Metric.WRITE_STRING_CALLS);
+    }
+    buffer.setLength(0);
     for (TextPosition textPosition : textPositions) {
-      RenderingMode charRenderingMode = renderingMode.get(textPosition);
-      float[] charStrokingColor = strokingColor.get(textPosition);
-      float[] charNonStrokingColor = nonStrokingColor.get(textPosition);
+      int glyph = glyphState.indexOf(textPosition);
+      RenderingMode charRenderingMode = glyph >= 0 ? glyphState.renderingMode(glyph) : null;
 
-      StringBuilder textBuilder = new StringBuilder();
-      textBuilder.append(textPosition.getUnicode()).append("{");
+      buffer.append(textPosition.getUnicode()).append('{');
 
       if (FILLING_MODES.contains(charRenderingMode)) {
-        textBuilder.append("FILL:").append(toString(charNonStrokingColor)).append(';');
+        buffer.append("FILL:").append(toString(glyphState.nonStrokingColor(glyph))).append(';');
       }
 
       if (STROKING_MODES.contains(charRenderingMode)) {
-        textBuilder.append("STROKE:").append(toString(charStrokingColor)).append(';');
+        buffer.append("STROKE:").append(toString(glyphState.strokingColor(glyph))).append(';');
       }
 
       if (CLIPPING_MODES.contains(charRenderingMode)) {
-        textBuilder.append("CLIP;");
+        buffer.append("CLIP;");
       }
 
-      textBuilder.append("}");
-      writeString(textBuilder.toString());
+      buffer.append('}');
     }
+
+    int length = buffer.length();
+    if (length > chars.length) {
+      chars = new char[Math.max(2 * chars.length, length)];
+    }
+    buffer.getChars(0, length, chars, 0);
+    output.write(chars, 0, length);
+  }
+
+  private String toString(PDColor color) {
+    if (color == lastColors[0]) {
+      return lastText[0];
+    }
+    if (color == lastColors[1]) {
+      return lastText[1];
+    }
+    String text = toString(color.getComponents());
+    lastColors[lastNext] = color;
+    lastText[lastNext] = text;
+    lastNext ^= 1;
+    return text;
   }
 
   String toString(float[] values) {
@@ -127,14 +209,177 @@ public class ColorTextStripper extends PDFTextStripper {
   }
 
   public static void processPdf(byte[] input) throws IOException {
-    try (PDDocument document = PDDocument.load(input)) {
-      PDFTextStripper stripper = new ColorTextStripper();
-      stripper.setSortByPosition(true);
-      stripper.setStartPage(0);
-      stripper.setEndPage(document.getNumberOfPages());
-
-      String text = stripper.getText(document);
-      System.out.println(text);
+    processPdf(DocumentSource.of(input), PageSelection.ALL, new OutputStreamWriter(System.out));
+  }
+
+  public static void processPdf(Path file, MemoryUsageSetting memUsageSetting)
+      throws IOException {
+    processPdf(
+        DocumentSource.of(file, memUsageSetting),
+        PageSelection.ALL,
+        new OutputStreamWriter(System.out));
+  }
+
+  /**
+   * Writes the colour annotated text to {@code output} instead of stdout.
+   *
+   * @return the number of pages processed
+   */
+  public static int processPdf(Path file, MemoryUsageSetting memUsageSetting, Writer output)
+      throws IOException {
+    return processPdf(file, memUsageSetting, PageSelection.ALL, output);
+  }
+
+  /**
+   * Writes the colour annotated text of the selected pages to {@code output}.
+   *
+   * @return the number of pages processed
+   */
+  public static int processPdf(
+      Path file, MemoryUsageSetting memUsageSetting, PageSelection selection, Writer output)
+      throws IOException {
+    return processPdf(DocumentSource.of(file, memUsageSetting), selection, output);
+  }
+
+  /**
+   * Like {@link #processPdf(Path, MemoryUsageSetting, PageSelection, Writer)}, stripping the pages
+   * on {@code parallelism} threads, each with its own document. The output is the same: the pages
+   * are written in order as soon as all before them are. Small documents are stripped
+   * sequentially.
+   *
+   * @return the number of pages processed
+   */
+  public static int processPdf(
+      Path file,
+      MemoryUsageSetting memUsageSetting,
+      PageSelection selection,
+      Writer output,
+      int parallelism)
+      throws IOException {
+    return processPdf(DocumentSource.of(file, memUsageSetting), selection, output, parallelism);
+  }
+
+  private static int processPdf(DocumentSource source, PageSelection selection, Writer output)
+      throws IOException {
+    return processPdf(source, selection, output, 1);
+  }
+
+  private static int processPdf(
+      DocumentSource source, PageSelection selection, Writer output, int parallelism)
+      throws IOException {
+    int[] pages;
+    MetricsRecorder metrics = MetricsRecorder.create(source.getName());
+    try (PDDocument document = MetricsRecorder.open(metrics, source)) {
+      pages = selection.pages(document.getNumberOfPages());
+      if (parallelism < 2 || pages.length < TextRunStripper.MIN_PARALLEL_PAGES) {
+        ColorTextStripper stripper = new ColorTextStripper();
+        stripper.setSortByPosition(true);
+        stripper.pages = pages;
+        stripper.setPageTree(PageSelection.pageTree(document, pages));
+        stripper.metrics = metrics;
+
+        stripper.writeText(document, output);
+        output.write(System.lineSeparator());
+        output.flush();
+        MetricsRecorder.finish(metrics);
+        return pages.length;
+      }
+    }
+
+    List<PageWorker> workers = Collections.synchronizedList(new ArrayList<>());
+    ThreadLocal<PageWorker> worker =
+        ThreadLocal.withInitial(() -> PageWorker.open(source, metrics, workers));
+    ExecutorService pool = Executors.newFixedThreadPool(parallelism);
+    ArrayDeque<CompletableFuture<String>> pending = new ArrayDeque<>();
+    try {
+      for (int page : pages) {
+        if (pending.size() == PAGES_PER_THREAD * parallelism) {
+          output.write(join(pending.remove()));
+        }
+        pending.add(CompletableFuture.supplyAsync(() -> worker.get().strip(page), pool));
+      }
+      while (!pending.isEmpty()) {
+        output.write(join(pending.remove()));
+      }
+      output.write(System.lineSeparator());
+      output.flush();
+      MetricsRecorder.finish(metrics);
+      return pages.length;
+    } finally {
+      pool.shutdownNow();
+      // stripping doesn't check for interruption, let the pages finish before closing documents
+      try {
+        pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("interrupted while stopping the strip threads");
+      }
+      for (PageWorker pageWorker : workers) {
+        pageWorker.document.close();
+      }
+    }
+  }
+
+  private static String join(CompletableFuture<String> page) throws IOException {
+    try {
+      return page.join();
+    } catch (CompletionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof UncheckedIOException) {
+        throw ((UncheckedIOException) cause).getCause();
+      }
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new IOException(cause);
+    }
+  }
+
+  // a document and stripper per thread of processPdf with parallelism, stripping a page at a time
+  private static final class PageWorker {
+    final PDDocument document;
+    final ColorTextStripper stripper;
+    final CharArrayWriter output = new CharArrayWriter();
+
+    private PageWorker(PDDocument document, ColorTextStripper stripper) {
+      this.document = document;
+      this.stripper = stripper;
+    }
+
+    static PageWorker open(
+        DocumentSource source, MetricsRecorder metrics, List<PageWorker> workers) {
+      try {
+        PDDocument document = MetricsRecorder.open(metrics, source);
+        ColorTextStripper stripper;
+        try {
+          stripper = new ColorTextStripper();
+        } catch (IOException e) {
+          document.close();
+          throw e;
+        }
+        stripper.setSortByPosition(true);
+        stripper.metrics = metrics;
+        PageWorker worker = new PageWorker(document, stripper);
+        workers.add(worker);
+        return worker;
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+
+    String strip(int page) {
+      output.reset();
+      stripper.pages = new int[] {page};
+      stripper.setPageTree(PageSelection.pageTree(document, page));
+      try {
+        stripper.writeText(document, output);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      return output.toString();
     }
   }
 }
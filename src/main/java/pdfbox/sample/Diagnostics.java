@@ -0,0 +1,155 @@
+package pdfbox.sample;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.pdfbox.pdmodel.graphics.color.PDColor;
+import org.apache.pdfbox.pdmodel.graphics.state.RenderingMode;
+import org.apache.pdfbox.text.TextPosition;
+
+/**
+ * The {@link DiagnosticsSink} {@link PrintTextColors} and {@link DrawPrintTextLocations} report
+ * to, and sampling of what reaches a sink.
+ *
+ * <p>Unless set, the default sink is made from system properties when first asked for: {@code
+ * diagnostics} is the format, {@code text} (the default), {@code ndjson}, {@code csv} or {@code
+ * none}; {@code diagnostics.file} a file to write to instead of stdout; {@code diagnostics.every}
+ * keeps every nth glyph only, and {@code diagnostics.pages} the glyphs of the pages {@code
+ * first-last} only, 0 based.
+ */
+public final class Diagnostics {
+
+  // guarded by Diagnostics.class
+  private static DiagnosticsSink defaultSink;
+
+  private Diagnostics() {}
+
+  public static synchronized DiagnosticsSink getDefaultSink() {
+    if (defaultSink == null) {
+      defaultSink = fromSystemProperties();
+    }
+    return defaultSink;
+  }
+
+  public static synchronized void setDefaultSink(DiagnosticsSink sink) {
+    defaultSink = sink;
+  }
+
+  /**
+   * @param every keeps the first glyph and every {@code every}th after it, counted over all pages
+   *     selected, 1 keeps all
+   * @return a sink handing {@code sink} the glyphs of the selected pages that are kept
+   */
+  public static DiagnosticsSink sampled(DiagnosticsSink sink, int every, PageSelection pages) {
+    if (every < 1) {
+      throw new IllegalArgumentException("Invalid sampling interval " + every);
+    }
+    return new SampledSink(sink, every, pages);
+  }
+
+  private static DiagnosticsSink fromSystemProperties() {
+    String format = System.getProperty("diagnostics", "text").toUpperCase(Locale.ROOT);
+    if (format.equals("NONE")) {
+      return DiagnosticsSink.NOOP;
+    }
+
+    Writer out;
+    String file = System.getProperty("diagnostics.file");
+    try {
+      out =
+          file != null
+              ? Files.newBufferedWriter(Paths.get(file), StandardCharsets.UTF_8)
+              : new StdoutWriter();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    DiagnosticsSink sink = new DiagnosticsWriter(out, DiagnosticsWriter.Format.valueOf(format));
+
+    int every = Integer.getInteger("diagnostics.every", 1);
+    String pages = System.getProperty("diagnostics.pages");
+    if (every == 1 && pages == null) {
+      return sink;
+    }
+    return sampled(sink, every, pages != null ? parsePages(pages) : PageSelection.ALL);
+  }
+
+  private static PageSelection parsePages(String pages) {
+    int dash = pages.indexOf('-');
+    if (dash < 0) {
+      int page = Integer.parseInt(pages.trim());
+      return PageSelection.range(page, page + 1);
+    }
+    int first = Integer.parseInt(pages.substring(0, dash).trim());
+    int last = Integer.parseInt(pages.substring(dash + 1).trim());
+    return PageSelection.range(first, last + 1);
+  }
+
+  // whatever System.out is at the time, as System.out.println would
+  private static final class StdoutWriter extends Writer {
+    @Override
+    public void write(char[] chars, int offset, int length) {
+      System.out.print(new String(chars, offset, length));
+    }
+
+    @Override
+    public void flush() {
+      System.out.flush();
+    }
+
+    @Override
+    public void close() {}
+  }
+
+  private static final class SampledSink implements DiagnosticsSink {
+    private final DiagnosticsSink sink;
+    private final int every;
+    private final PageSelection pages;
+    private final AtomicLong glyphs = new AtomicLong();
+
+    SampledSink(DiagnosticsSink sink, int every, PageSelection pages) {
+      this.sink = sink;
+      this.every = every;
+      this.pages = pages;
+    }
+
+    @Override
+    public boolean isEnabled() {
+      return sink.isEnabled();
+    }
+
+    @Override
+    public boolean sample(int pageIndex) {
+      return pages.contains(pageIndex)
+          && (every == 1 || glyphs.getAndIncrement() % every == 0)
+          && sink.sample(pageIndex);
+    }
+
+    @Override
+    public void glyph(
+        String document,
+        int pageIndex,
+        String run,
+        TextPosition text,
+        RenderingMode renderingMode,
+        PDColor strokingColor,
+        PDColor nonStrokingColor) {
+      sink.glyph(
+          document, pageIndex, run, text, renderingMode, strokingColor, nonStrokingColor);
+    }
+
+    @Override
+    public void flush() {
+      sink.flush();
+    }
+
+    @Override
+    public String toString() {
+      return "SampledSink{" + "every=" + every + ", pages=" + pages + ", sink=" + sink + '}';
+    }
+  }
+}
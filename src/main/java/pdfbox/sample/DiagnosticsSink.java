@@ -0,0 +1,73 @@
+package pdfbox.sample;
+
+import org.apache.pdfbox.pdmodel.graphics.color.PDColor;
+import org.apache.pdfbox.pdmodel.graphics.state.RenderingMode;
+import org.apache.pdfbox.text.TextPosition;
+
+/**
+ * Receives what {@link PrintTextColors} and {@link DrawPrintTextLocations} report about the glyphs
+ * they strip. Glyphs of one document may arrive from several threads.
+ */
+public interface DiagnosticsSink {
+
+  /** Records nothing, and tells the strippers not to look at the glyphs. */
+  DiagnosticsSink NOOP =
+      new DiagnosticsSink() {
+        @Override
+        public boolean isEnabled() {
+          return false;
+        }
+
+        @Override
+        public boolean sample(int pageIndex) {
+          return false;
+        }
+
+        @Override
+        public void glyph(
+            String document,
+            int pageIndex,
+            String run,
+            TextPosition text,
+            RenderingMode renderingMode,
+            PDColor strokingColor,
+            PDColor nonStrokingColor) {}
+
+        @Override
+        public void flush() {}
+      };
+
+  default boolean isEnabled() {
+    return true;
+  }
+
+  /**
+   * Called before each glyph, which is only handed to {@link #glyph} if this returns true.
+   *
+   * @param pageIndex 0 based index of the glyph's page
+   */
+  default boolean sample(int pageIndex) {
+    return true;
+  }
+
+  /**
+   * Records a glyph. Its state is read before the call returns, the sink keeps none of the objects.
+   *
+   * @param document the document's name, see {@link DocumentSource#getName()}
+   * @param run the text the glyph starts, or null for a glyph reported on its own
+   * @param renderingMode the glyph's rendering mode, or null if not known
+   * @param strokingColor the stroking colour, or null if not known
+   * @param nonStrokingColor the non-stroking colour, or null if not known
+   */
+  void glyph(
+      String document,
+      int pageIndex,
+      String run,
+      TextPosition text,
+      RenderingMode renderingMode,
+      PDColor strokingColor,
+      PDColor nonStrokingColor);
+
+  /** Called at the end of each document: returns once everything recorded so far is written. */
+  void flush();
+}
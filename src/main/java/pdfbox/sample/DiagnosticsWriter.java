@@ -0,0 +1,395 @@
+package pdfbox.sample;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import org.apache.pdfbox.pdmodel.graphics.color.PDColor;
+import org.apache.pdfbox.pdmodel.graphics.state.RenderingMode;
+import org.apache.pdfbox.text.TextPosition;
+
+/**
+ * Writes one record per glyph in a {@link Format}, on a thread of its own.
+ *
+ * <p>Records are appended to a batch of about {@value #BATCH_CHARS} characters on the calling
+ * thread, numbers and all, without building strings. Full batches are queued for the writer
+ * thread; when {@value #QUEUED_BATCHES} are queued the callers wait. {@link #flush()} waits until
+ * the writer has caught up, {@link #close()} also stops it. The underlying writer is not closed.
+ */
+public final class DiagnosticsWriter implements DiagnosticsSink, Closeable {
+
+  public enum Format {
+    /**
+     * What the strippers print to the console: a run with its first glyph and colours over several
+     * lines, a glyph on its own as {@code String[x,y fs=.. ...]} and its text.
+     */
+    TEXT,
+    /** One JSON object per line, fields that are not known left out. */
+    NDJSON,
+    /** Comma separated values with a header line, fields that are not known left empty. */
+    CSV
+  }
+
+  static final int BATCH_CHARS = 1 << 16;
+  static final int QUEUED_BATCHES = 4;
+
+  private static final String CSV_HEADER =
+      "document,page,run,unicode,x,y,fontSize,xScale,height,spaceWidth,width,renderingMode,"
+          + "strokingColor,nonStrokingColor";
+
+  private final Writer out;
+  private final Format format;
+  private final String lineSeparator = System.lineSeparator();
+
+  // full batches and flush requests in order, and emptied batches to fill again
+  private final BlockingQueue<Object> queue = new ArrayBlockingQueue<>(QUEUED_BATCHES);
+  private final BlockingQueue<StringBuilder> free = new ArrayBlockingQueue<>(QUEUED_BATCHES + 1);
+  private final Thread writer;
+
+  // guarded by this
+  private StringBuilder batch = new StringBuilder(BATCH_CHARS);
+  private boolean closed;
+
+  public DiagnosticsWriter(Writer out, Format format) {
+    this.out = out;
+    this.format = format;
+    if (format == Format.CSV) {
+      batch.append(CSV_HEADER).append(lineSeparator);
+    }
+    writer = new Thread(this::write, "diagnostics");
+    writer.setDaemon(true);
+    writer.start();
+  }
+
+  @Override
+  public synchronized void glyph(
+      String document,
+      int pageIndex,
+      String run,
+      TextPosition text,
+      RenderingMode renderingMode,
+      PDColor strokingColor,
+      PDColor nonStrokingColor) {
+    if (closed) {
+      return;
+    }
+    switch (format) {
+      case TEXT:
+        appendText(run, text, renderingMode, strokingColor, nonStrokingColor);
+        break;
+      case NDJSON:
+        appendJson(document, pageIndex, run, text, renderingMode, strokingColor, nonStrokingColor);
+        break;
+      default:
+        appendCsv(document, pageIndex, run, text, renderingMode, strokingColor, nonStrokingColor);
+        break;
+    }
+    if (batch.length() >= BATCH_CHARS) {
+      enqueue(batch);
+      StringBuilder next = free.poll();
+      batch = next != null ? next : new StringBuilder(BATCH_CHARS);
+    }
+  }
+
+  @Override
+  public void flush() {
+    await(requestFlush(false));
+  }
+
+  /** Writes what is left and stops the writer thread; later glyphs are dropped. */
+  @Override
+  public void close() {
+    Flush last = requestFlush(true);
+    if (last != null) {
+      await(last);
+      try {
+        writer.join();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  private synchronized Flush requestFlush(boolean last) {
+    if (closed) {
+      return null;
+    }
+    closed = last;
+    if (batch.length() > 0) {
+      enqueue(batch);
+      StringBuilder next = free.poll();
+      batch = next != null ? next : new StringBuilder(BATCH_CHARS);
+    }
+    Flush flush = new Flush(last);
+    enqueue(flush);
+    return flush;
+  }
+
+  // an interrupt doesn't lose the item, it is queued anyway and the interrupt restored after
+  private void enqueue(Object item) {
+    boolean interrupted = false;
+    while (true) {
+      try {
+        queue.put(item);
+        break;
+      } catch (InterruptedException e) {
+        interrupted = true;
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private static void await(Flush flush) {
+    if (flush == null) {
+      return;
+    }
+    try {
+      flush.done.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  // the writer thread
+  private void write() {
+    char[] chars = new char[BATCH_CHARS];
+    while (true) {
+      Object next;
+      try {
+        next = queue.take();
+      } catch (InterruptedException e) {
+        return;
+      }
+
+      if (next instanceof Flush) {
+        Flush flush = (Flush) next;
+        try {
+          out.flush();
+        } catch (IOException e) {
+          e.printStackTrace();
+        }
+        flush.done.countDown();
+        if (flush.last) {
+          return;
+        }
+        continue;
+      }
+
+      StringBuilder full = (StringBuilder) next;
+      int length = full.length();
+      if (length > chars.length) {
+        chars = new char[length];
+      }
+      full.getChars(0, length, chars, 0);
+      try {
+        out.write(chars, 0, length);
+      } catch (IOException e) {
+        e.printStackTrace();
+      }
+      full.setLength(0);
+      free.offer(full);
+    }
+  }
+
+  private void appendText(
+      String run,
+      TextPosition text,
+      RenderingMode renderingMode,
+      PDColor strokingColor,
+      PDColor nonStrokingColor) {
+    if (run == null) {
+      appendPosition(text).append(text.getUnicode()).append(lineSeparator);
+      return;
+    }
+    batch.append(run).append(lineSeparator);
+    batch.append("1st char Unicode:            ").append(text.getUnicode()).append(lineSeparator);
+    batch.append("Rendering mode:     ").append(renderingMode).append(lineSeparator);
+    batch.append("Stroking color:     ").append(strokingColor).append(lineSeparator);
+    batch.append("Non-Stroking color: ").append(nonStrokingColor).append(lineSeparator);
+    appendPosition(text).append(lineSeparator);
+    batch.append(lineSeparator);
+  }
+
+  private StringBuilder appendPosition(TextPosition text) {
+    return batch
+        .append("String[")
+        .append(text.getXDirAdj())
+        .append(',')
+        .append(text.getYDirAdj())
+        .append(" fs=")
+        .append(text.getFontSize())
+        .append(" xscale=")
+        .append(text.getXScale())
+        .append(" height=")
+        .append(text.getHeightDir())
+        .append(" space=")
+        .append(text.getWidthOfSpace())
+        .append(" width=")
+        .append(text.getWidthDirAdj())
+        .append(']');
+  }
+
+  private void appendJson(
+      String document,
+      int pageIndex,
+      String run,
+      TextPosition text,
+      RenderingMode renderingMode,
+      PDColor strokingColor,
+      PDColor nonStrokingColor) {
+    batch.append("{\"document\":");
+    appendJsonString(document);
+    batch.append(",\"page\":").append(pageIndex);
+    if (run != null) {
+      batch.append(",\"run\":");
+      appendJsonString(run);
+    }
+    batch.append(",\"unicode\":");
+    appendJsonString(text.getUnicode());
+    appendJsonNumber("x", text.getXDirAdj());
+    appendJsonNumber("y", text.getYDirAdj());
+    appendJsonNumber("fontSize", text.getFontSize());
+    appendJsonNumber("xScale", text.getXScale());
+    appendJsonNumber("height", text.getHeightDir());
+    appendJsonNumber("spaceWidth", text.getWidthOfSpace());
+    appendJsonNumber("width", text.getWidthDirAdj());
+    if (renderingMode != null) {
+      batch.append(",\"renderingMode\":\"").append(renderingMode.name()).append('"');
+    }
+    appendJsonColor("strokingColor", strokingColor);
+    appendJsonColor("nonStrokingColor", nonStrokingColor);
+    batch.append('}').append('\n');
+  }
+
+  private void appendJsonString(String value) {
+    if (value == null) {
+      batch.append("null");
+      return;
+    }
+    batch.append('"');
+    for (int i = 0; i < value.length(); ++i) {
+      char c = value.charAt(i);
+      if (c == '"' || c == '\\') {
+        batch.append('\\').append(c);
+      } else if (c < 0x20) {
+        batch.append("\\u00").append(Character.forDigit(c >> 4, 16));
+        batch.append(Character.forDigit(c & 0xF, 16));
+      } else {
+        batch.append(c);
+      }
+    }
+    batch.append('"');
+  }
+
+  private void appendJsonNumber(String key, float value) {
+    batch.append(",\"").append(key).append("\":");
+    appendJsonNumber(value);
+  }
+
+  // JSON has no NaN or infinity
+  private void appendJsonNumber(float value) {
+    if (Float.isNaN(value) || Float.isInfinite(value)) {
+      batch.append("null");
+    } else {
+      batch.append(value);
+    }
+  }
+
+  private void appendJsonColor(String key, PDColor color) {
+    if (color == null) {
+      return;
+    }
+    batch.append(",\"").append(key).append("\":[");
+    float[] components = color.getComponents();
+    for (int i = 0; i < components.length; ++i) {
+      if (i > 0) {
+        batch.append(',');
+      }
+      appendJsonNumber(components[i]);
+    }
+    batch.append(']');
+  }
+
+  private void appendCsv(
+      String document,
+      int pageIndex,
+      String run,
+      TextPosition text,
+      RenderingMode renderingMode,
+      PDColor strokingColor,
+      PDColor nonStrokingColor) {
+    appendCsvString(document);
+    batch.append(',').append(pageIndex).append(',');
+    appendCsvString(run);
+    batch.append(',');
+    appendCsvString(text.getUnicode());
+    batch.append(',').append(text.getXDirAdj());
+    batch.append(',').append(text.getYDirAdj());
+    batch.append(',').append(text.getFontSize());
+    batch.append(',').append(text.getXScale());
+    batch.append(',').append(text.getHeightDir());
+    batch.append(',').append(text.getWidthOfSpace());
+    batch.append(',').append(text.getWidthDirAdj());
+    batch.append(',');
+    if (renderingMode != null) {
+      batch.append(renderingMode.name());
+    }
+    batch.append(',');
+    appendCsvColor(strokingColor);
+    batch.append(',');
+    appendCsvColor(nonStrokingColor);
+    batch.append(lineSeparator);
+  }
+
+  // quoted only if it has to be, quotes doubled
+  private void appendCsvString(String value) {
+    if (value == null) {
+      return;
+    }
+    boolean quote = false;
+    for (int i = 0; i < value.length() && !quote; ++i) {
+      char c = value.charAt(i);
+      quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+    }
+    if (!quote) {
+      batch.append(value);
+      return;
+    }
+    batch.append('"');
+    for (int i = 0; i < value.length(); ++i) {
+      char c = value.charAt(i);
+      if (c == '"') {
+        batch.append('"');
+      }
+      batch.append(c);
+    }
+    batch.append('"');
+  }
+
+  // components separated by spaces
+  private void appendCsvColor(PDColor color) {
+    if (color == null) {
+      return;
+    }
+    float[] components = color.getComponents();
+    for (int i = 0; i < components.length; ++i) {
+      if (i > 0) {
+        batch.append(' ');
+      }
+      batch.append(components[i]);
+    }
+  }
+
+  private static final class Flush {
+    final boolean last;
+    final CountDownLatch done = new CountDownLatch(1);
+
+    Flush(boolean last) {
+      this.last = last;
+    }
+  }
+}
@@ -0,0 +1,42 @@
+package pdfbox.sample;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.pdmodel.PDDocument;
+
+/** Opens a new {@link PDDocument} on every call, so that each worker can have its own. */
+@FunctionalInterface
+public interface DocumentSource {
+
+  PDDocument open() throws IOException;
+
+  /** @return what the document is called in metrics and logs, e.g. its file name */
+  default String getName() {
+    return "-";
+  }
+
+  static DocumentSource of(byte[] input) {
+    return () -> PDDocument.load(input);
+  }
+
+  /**
+   * Reads the file through a buffered random access view instead of copying it onto the heap.
+   *
+   * @param memUsageSetting heap budget for parsed document data, the rest goes to a scratch file,
+   *     e.g. {@link MemoryUsageSetting#setupMixed(long)}
+   */
+  static DocumentSource of(Path file, MemoryUsageSetting memUsageSetting) {
+    return new DocumentSource() {
+      @Override
+      public PDDocument open() throws IOException {
+        return PDDocument.load(file.toFile(), memUsageSetting);
+      }
+
+      @Override
+      public String getName() {
+        return file.toString();
+      }
+    };
+  }
+}
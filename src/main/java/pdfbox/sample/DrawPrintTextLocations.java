@@ -2,33 +2,22 @@ package pdfbox.sample;
 
 import java.awt.BasicStroke;
 import java.awt.Color;
-import java.awt.Graphics2D;
 import java.awt.Shape;
 import java.awt.geom.AffineTransform;
-import java.awt.geom.GeneralPath;
 import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
-import java.io.OutputStreamWriter;
-import java.io.Writer;
+import java.nio.file.Paths;
 import java.util.List;
 import javax.imageio.ImageIO;
-import org.apache.fontbox.util.BoundingBox;
+import org.apache.pdfbox.io.MemoryUsageSetting;
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.pdmodel.PDPage;
 import org.apache.pdfbox.pdmodel.common.PDRectangle;
-import org.apache.pdfbox.pdmodel.font.PDCIDFontType2;
 import org.apache.pdfbox.pdmodel.font.PDFont;
-import org.apache.pdfbox.pdmodel.font.PDTrueTypeFont;
-import org.apache.pdfbox.pdmodel.font.PDType0Font;
-import org.apache.pdfbox.pdmodel.font.PDType3CharProc;
-import org.apache.pdfbox.pdmodel.font.PDType3Font;
-import org.apache.pdfbox.pdmodel.font.PDVectorFont;
 import org.apache.pdfbox.pdmodel.interactive.pagenavigation.PDThreadBead;
 import org.apache.pdfbox.rendering.PDFRenderer;
-import org.apache.pdfbox.text.PDFTextStripper;
 import org.apache.pdfbox.text.TextPosition;
 import org.apache.pdfbox.util.Matrix;
 import org.apache.pdfbox.util.Vector;
@@ -37,20 +26,39 @@ import org.apache.pdfbox.util.Vector;
  * This is an example on how to get some x/y coordinates of text and to show them in a rendered
  * image.
  *
+ * <p>With {@code -Dmetrics=json} the totals of each document, the hits, misses and evictions of its
+ * resource cache included, are logged to stderr, see {@link Metrics}.
+ *
  * @author Ben Litchfield
  * @author Tilman Hausherr
  */
-public class DrawPrintTextLocations extends PDFTextStripper {
+public class DrawPrintTextLocations extends PageTreeStripper {
   private AffineTransform flipAT;
   private AffineTransform rotateAT;
   private AffineTransform transAT;
   private final String filename;
-  static final int SCALE = 4;
-  private Graphics2D g2d;
+  private final RenderOptions options;
+  private Overlay overlay;
+  private int pageIndex;
+  private final DiagnosticsSink diagnostics = Diagnostics.getDefaultSink();
+
+  // null unless metrics are recorded, see MetricsRecorder
+  private MetricsRecorder recorder;
+  private Metrics pageMetrics;
+  private final PDFRenderer pdfRenderer;
+  private final GlyphMetricsCache glyphMetrics = new GlyphMetricsCache();
+  private final GlyphBoundsCache glyphBounds = new GlyphBoundsCache();
 
   public DrawPrintTextLocations(PDDocument document, String filename) throws IOException {
+    this(document, filename, new RenderOptions());
+  }
+
+  public DrawPrintTextLocations(PDDocument document, String filename, RenderOptions options)
+      throws IOException {
     this.document = document; // must initialize here, base class initializes too late
     this.filename = filename;
+    this.options = options;
+    this.pdfRenderer = new PDFRenderer(document);
   }
 
   /**
@@ -59,13 +67,90 @@ public class DrawPrintTextLocations extends PDFTextStripper {
    * @throws IOException If there is an error parsing the document.
    */
   public static void processPdf(String filename) throws IOException {
+    processPdf(filename, MemoryUsageSetting.setupMainMemoryOnly());
+  }
+
+  /**
+   * @param memUsageSetting heap budget for parsed document data, the rest goes to a scratch file
+   * @throws IOException If there is an error parsing the document.
+   */
+  public static void processPdf(String filename, MemoryUsageSetting memUsageSetting)
+      throws IOException {
+    processPdf(filename, memUsageSetting, new RenderOptions());
+  }
+
+  /**
+   * @param options resolution, image type and the part of each page to render
+   * @throws IOException If there is an error parsing the document.
+   */
+  public static void processPdf(
+      String filename, MemoryUsageSetting memUsageSetting, RenderOptions options)
+      throws IOException {
+
+    DocumentSource source = DocumentSource.of(Paths.get(filename), memUsageSetting);
+    MetricsRecorder recorder = MetricsRecorder.create(source.getName());
+    try (PDDocument document = MetricsRecorder.open(recorder, source)) {
+      LruResourceCache cache =
+          LruResourceCache.install(document, LruResourceCache.DEFAULT_MAX_BYTES);
+      DrawPrintTextLocations stripper = new DrawPrintTextLocations(document, filename, options);
+      stripper.setSortByPosition(true);
+      stripper.recorder = recorder;
+
+      try {
+        for (int page : options.getPages().pages(document.getNumberOfPages())) {
+          stripper.stripPage(page);
+        }
+        MetricsRecorder.add(recorder, cache);
+        MetricsRecorder.finish(recorder);
+      } finally {
+        stripper.diagnostics.flush();
+      }
+    }
+  }
+
+  /**
+   * Renders on {@code renderThreads} threads, each with its own document, and writes the PNGs on
+   * {@code encodeThreads} more, while this thread records the overlays in page order.
+   *
+   * @throws IOException If there is an error parsing the document.
+   */
+  public static void processPdf(
+      String filename, MemoryUsageSetting memUsageSetting, int renderThreads, int encodeThreads)
+      throws IOException {
+    processPdf(filename, memUsageSetting, new RenderOptions(), renderThreads, encodeThreads);
+  }
+
+  /**
+   * @param options resolution, image type and the part of each page to render
+   * @throws IOException If there is an error parsing the document.
+   */
+  public static void processPdf(
+      String filename,
+      MemoryUsageSetting memUsageSetting,
+      RenderOptions options,
+      int renderThreads,
+      int encodeThreads)
+      throws IOException {
 
-    try (PDDocument document = PDDocument.load(new File(filename))) {
-      DrawPrintTextLocations stripper = new DrawPrintTextLocations(document, filename);
+    DocumentSource source = DocumentSource.of(Paths.get(filename), memUsageSetting);
+    MetricsRecorder recorder = MetricsRecorder.create(source.getName());
+    try (PDDocument document = MetricsRecorder.open(recorder, source)) {
+      // shared with the render threads' documents
+      LruResourceCache cache =
+          LruResourceCache.install(document, LruResourceCache.DEFAULT_MAX_BYTES);
+      DrawPrintTextLocations stripper = new DrawPrintTextLocations(document, filename, options);
       stripper.setSortByPosition(true);
+      stripper.recorder = recorder;
 
-      for (int page = 0; page < document.getNumberOfPages(); ++page) {
-        stripper.stripPage(page);
+      RenderPipeline pipeline =
+          new RenderPipeline(
+              source, cache, options, renderThreads, encodeThreads, renderThreads, recorder);
+      try {
+        pipeline.run(document, stripper::recordPage, stripper::imageFile);
+        MetricsRecorder.add(recorder, cache);
+        MetricsRecorder.finish(recorder);
+      } finally {
+        stripper.diagnostics.flush();
       }
     }
   }
@@ -79,75 +164,67 @@ public class DrawPrintTextLocations extends PDFTextStripper {
     // show actual glyph bounds. This must be done here and not in writeString(),
     // because writeString processes only the glyphs with unicode,
     // see e.g. the file in PDFBOX-3274
+    long start = pageMetrics != null ? System.nanoTime() : 0;
     Shape cyanShape = calculateGlyphBounds(textRenderingMatrix, font, code);
+    if (pageMetrics != null) {
+      pageMetrics.add(Metrics.Metric.BOUNDS_NANOS, System.nanoTime() - start);
+    }
 
     if (cyanShape != null) {
       cyanShape = flipAT.createTransformedShape(cyanShape);
       cyanShape = rotateAT.createTransformedShape(cyanShape);
       cyanShape = transAT.createTransformedShape(cyanShape);
 
-      g2d.setColor(Color.CYAN);
-      g2d.draw(cyanShape);
+      overlay.setColor(Color.CYAN);
+      overlay.draw(cyanShape);
     }
   }
 
   // this calculates the real (except for type 3 fonts) individual glyph bounds
   private Shape calculateGlyphBounds(Matrix textRenderingMatrix, PDFont font, int code)
       throws IOException {
-    GeneralPath path = null;
-    AffineTransform at = textRenderingMatrix.createAffineTransform();
-    at.concatenate(font.getFontMatrix().createAffineTransform());
-    if (font instanceof PDType3Font) {
-      // It is difficult to calculate the real individual glyph bounds for type 3 fonts
-      // because these are not vector fonts, the content stream could contain almost anything
-      // that is found in page content streams.
-      PDType3Font t3Font = (PDType3Font) font;
-      PDType3CharProc charProc = t3Font.getCharProc(code);
-      if (charProc != null) {
-        BoundingBox fontBBox = t3Font.getBoundingBox();
-        PDRectangle glyphBBox = charProc.getGlyphBBox();
-        if (glyphBBox != null) {
-          // PDFBOX-3850: glyph bbox could be larger than the font bbox
-          glyphBBox.setLowerLeftX(Math.max(fontBBox.getLowerLeftX(), glyphBBox.getLowerLeftX()));
-          glyphBBox.setLowerLeftY(Math.max(fontBBox.getLowerLeftY(), glyphBBox.getLowerLeftY()));
-          glyphBBox.setUpperRightX(Math.min(fontBBox.getUpperRightX(), glyphBBox.getUpperRightX()));
-          glyphBBox.setUpperRightY(Math.min(fontBBox.getUpperRightY(), glyphBBox.getUpperRightY()));
-          path = glyphBBox.toGeneralPath();
-        }
-      }
-    } else if (font instanceof PDVectorFont) {
-      PDVectorFont vectorFont = (PDVectorFont) font;
-      path = vectorFont.getPath(code);
-
-      if (font instanceof PDTrueTypeFont) {
-        PDTrueTypeFont ttFont = (PDTrueTypeFont) font;
-        int unitsPerEm = ttFont.getTrueTypeFont().getHeader().getUnitsPerEm();
-        at.scale(1000d / unitsPerEm, 1000d / unitsPerEm);
-      }
-      if (font instanceof PDType0Font) {
-        PDType0Font t0font = (PDType0Font) font;
-        if (t0font.getDescendantFont() instanceof PDCIDFontType2) {
-          int unitsPerEm =
-              ((PDCIDFontType2) t0font.getDescendantFont())
-                  .getTrueTypeFont()
-                  .getHeader()
-                  .getUnitsPerEm();
-          at.scale(1000d / unitsPerEm, 1000d / unitsPerEm);
-        }
-      }
-    } else {
-      // shouldn't happen, please open issue in JIRA
-      System.out.println("Unknown font class: " + font.getClass());
-    }
-    if (path == null) {
+    GlyphBoundsCache.FontBounds fontBounds = glyphBounds.get(font);
+    Rectangle2D bounds = fontBounds.bounds(code);
+    if (bounds == null) {
       return null;
     }
-    return at.createTransformedShape(path.getBounds2D());
+    AffineTransform at = fontBounds.concatenate(textRenderingMatrix.createAffineTransform());
+    return at.createTransformedShape(bounds);
   }
 
   private void stripPage(int page) throws IOException {
-    PDFRenderer pdfRenderer = new PDFRenderer(document);
-    BufferedImage image = pdfRenderer.renderImage(page, SCALE);
+    pageMetrics = recorder != null ? recorder.startPage() : null;
+    Overlay pageOverlay = recordOverlay(page);
+    for (PageTiles.Tile tile : PageTiles.tiles(document.getPage(page), options, pageOverlay)) {
+      long start = pageMetrics != null ? System.nanoTime() : 0;
+      BufferedImage image = PageTiles.render(pdfRenderer, page, tile, options, pageOverlay);
+      long rendered = pageMetrics != null ? System.nanoTime() : 0;
+      ImageIO.write(image, "png", imageFile(page, tile));
+      if (pageMetrics != null) {
+        pageMetrics.add(Metrics.Metric.RENDER_NANOS, rendered - start);
+        pageMetrics.add(Metrics.Metric.ENCODE_NANOS, System.nanoTime() - rendered);
+      }
+    }
+    endPage(page);
+  }
+
+  // a pipelined page reports its overlay only, RenderPipeline adds rendering to the totals
+  private Overlay recordPage(int page) throws IOException {
+    pageMetrics = recorder != null ? recorder.startPage() : null;
+    Overlay pageOverlay = recordOverlay(page);
+    endPage(page);
+    return pageOverlay;
+  }
+
+  private void endPage(int page) {
+    if (pageMetrics != null) {
+      recorder.endPage(page, pageMetrics);
+      pageMetrics = null;
+    }
+  }
+
+  private Overlay recordOverlay(int page) throws IOException {
+    pageIndex = page;
     PDPage pdPage = document.getPage(page);
     PDRectangle cropBox = pdPage.getCropBox();
 
@@ -181,18 +258,22 @@ public class DrawPrintTextLocations extends PDFTextStripper {
     transAT =
         AffineTransform.getTranslateInstance(-cropBox.getLowerLeftX(), cropBox.getLowerLeftY());
 
-    g2d = image.createGraphics();
-    g2d.setStroke(new BasicStroke(0.1f));
-    g2d.scale(SCALE, SCALE);
+    overlay = new Overlay();
+    overlay.setStroke(new BasicStroke(0.1f));
 
-    setStartPage(page + 1);
-    setEndPage(page + 1);
-
-    Writer dummy = new OutputStreamWriter(new ByteArrayOutputStream());
-    writeText(document, dummy);
+    setPageTree(PageSelection.pageTree(document, page));
+    long start = pageMetrics != null ? System.nanoTime() : 0;
+    try {
+      writeText(document, NullWriter.INSTANCE);
+    } finally {
+      setPageTree(null);
+    }
+    if (pageMetrics != null) {
+      pageMetrics.add(Metrics.Metric.INTERPRET_NANOS, System.nanoTime() - start);
+    }
 
     // beads in green
-    g2d.setStroke(new BasicStroke(0.4f));
+    overlay.setStroke(new BasicStroke(0.4f));
     List<PDThreadBead> pageArticles = pdPage.getThreadBeads();
     for (PDThreadBead bead : pageArticles) {
       if (bead == null) {
@@ -202,39 +283,39 @@ public class DrawPrintTextLocations extends PDFTextStripper {
       Shape s = r.toGeneralPath().createTransformedShape(transAT);
       s = flipAT.createTransformedShape(s);
       s = rotateAT.createTransformedShape(s);
-      g2d.setColor(Color.green);
-      g2d.draw(s);
+      overlay.setColor(Color.green);
+      overlay.draw(s);
     }
 
-    g2d.dispose();
+    return overlay;
+  }
+
+  @Override
+  protected void processTextPosition(TextPosition text) {
+    if (pageMetrics != null) {
+      pageMetrics.increment(Metrics.Metric.GLYPHS);
+    }
+    super.processTextPosition(text);
+  }
 
+  private File imageFile(int page, PageTiles.Tile tile) {
     String imageFilename = filename;
     int pt = imageFilename.lastIndexOf('.');
-    imageFilename = imageFilename.substring(0, pt) + "-marked-" + (page + 1) + ".png";
-    ImageIO.write(image, "png", new File(imageFilename));
+    imageFilename =
+        imageFilename.substring(0, pt) + "-marked-" + (page + 1) + tile.suffix() + ".png";
+    return new File(imageFilename);
   }
 
   /** Override the default functionality of PDFTextStripper. */
   @Override
   protected void writeString(String string, List<TextPosition> textPositions) throws IOException {
+    if (pageMetrics != null) {
+      pageMetrics.increment(Metrics.Metric.WRITE_STRING_CALLS);
+    }
     for (TextPosition text : textPositions) {
-      System.out.println(
-          "String["
-              + text.getXDirAdj()
-              + ","
-              + text.getYDirAdj()
-              + " fs="
-              + text.getFontSize()
-              + " xscale="
-              + text.getXScale()
-              + " height="
-              + text.getHeightDir()
-              + " space="
-              + text.getWidthOfSpace()
-              + " width="
-              + text.getWidthDirAdj()
-              + "]"
-              + text.getUnicode());
+      if (diagnostics.sample(pageIndex)) {
+        diagnostics.glyph(filename, pageIndex, null, text, null, null, null);
+      }
 
       // glyph space -> user space
       // note: text.getTextMatrix() is *not* the Text Matrix, it's the Text Rendering Matrix
@@ -252,32 +333,25 @@ public class DrawPrintTextLocations extends PDFTextStripper {
       Shape s = at.createTransformedShape(rect);
       s = flipAT.createTransformedShape(s);
       s = rotateAT.createTransformedShape(s);
-      g2d.setColor(Color.red);
-      g2d.draw(s);
+      overlay.setColor(Color.red);
+      overlay.draw(s);
 
       // in blue:
       // show rectangle with the real vertical bounds, based on the font bounding box y values
       // usually, the height is identical to what you see when marking text in Adobe Reader
-      PDFont font = text.getFont();
-      BoundingBox bbox = font.getBoundingBox();
+      GlyphMetricsCache.FontMetrics metrics = glyphMetrics.get(text.getFont());
 
       // advance width, bbox height (glyph space)
-      float xadvance = font.getWidth(text.getCharacterCodes()[0]); // todo: should iterate all chars
-      rect = new Rectangle2D.Float(0, bbox.getLowerLeftY(), xadvance, bbox.getHeight());
-
-      if (font instanceof PDType3Font) {
-        // bbox and font matrix are unscaled
-        at.concatenate(font.getFontMatrix().createAffineTransform());
-      } else {
-        // bbox and font matrix are already scaled to 1000
-        at.scale(1 / 1000f, 1 / 1000f);
-      }
+      float xadvance = metrics.width(text.getCharacterCodes()[0]); // todo: should iterate all chars
+      rect = new Rectangle2D.Float(0, metrics.bboxLowerLeftY, xadvance, metrics.bboxHeight);
+
+      at.concatenate(metrics.glyphToText);
       s = at.createTransformedShape(rect);
       s = flipAT.createTransformedShape(s);
       s = rotateAT.createTransformedShape(s);
 
-      g2d.setColor(Color.blue);
-      g2d.draw(s);
+      overlay.setColor(Color.blue);
+      overlay.draw(s);
     }
   }
 }
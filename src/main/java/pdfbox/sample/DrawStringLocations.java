@@ -2,50 +2,57 @@ package pdfbox.sample;
 
 import java.awt.BasicStroke;
 import java.awt.Color;
-import java.awt.Graphics2D;
-import java.awt.Shape;
 import java.awt.geom.AffineTransform;
-import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
-import java.io.OutputStreamWriter;
-import java.io.Writer;
+import java.nio.file.Paths;
 import java.util.List;
-import java.util.Objects;
-import java.util.stream.Collectors;
 import javax.imageio.ImageIO;
-import org.apache.fontbox.util.BoundingBox;
+import org.apache.pdfbox.io.MemoryUsageSetting;
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.pdmodel.PDPage;
 import org.apache.pdfbox.pdmodel.common.PDRectangle;
-import org.apache.pdfbox.pdmodel.font.PDFont;
-import org.apache.pdfbox.pdmodel.font.PDType3Font;
 import org.apache.pdfbox.rendering.PDFRenderer;
-import org.apache.pdfbox.text.PDFTextStripper;
 import org.apache.pdfbox.text.TextPosition;
 
 /**
  * This is an example on how to get some x/y coordinates of text and to show them in a rendered
  * image.
  *
+ * <p>With {@code -Dmetrics=json} the totals of each document, the hits, misses and evictions of its
+ * resource cache included, are logged to stderr, see {@link Metrics}.
+ *
  * @author Ben Litchfield
  * @author Tilman Hausherr
  */
 // https://stackoverflow.com/questions/21430341/identifying-the-text-based-on-the-output-in-pdf-using-pdfbox
 // https://stackoverflow.com/questions/20878170/how-to-determine-artificial-bold-style-artificial-italic-style-and-artificial-o/20924898#20924898
-public class DrawStringLocations extends PDFTextStripper {
+public class DrawStringLocations extends PageTreeStripper {
   private AffineTransform flipAT;
   private AffineTransform rotateAT;
   private AffineTransform transAT;
   private final String filename;
-  static final int SCALE = 4;
-  private Graphics2D g2d;
+  private final RenderOptions options;
+  private Overlay overlay;
+
+  // null unless metrics are recorded, see MetricsRecorder
+  private MetricsRecorder recorder;
+  private Metrics pageMetrics;
+  private final PDFRenderer pdfRenderer;
+  private final GlyphMetricsCache glyphMetrics = new GlyphMetricsCache();
+  private final RunBounds runBounds = new RunBounds();
 
   public DrawStringLocations(PDDocument document, String filename) throws IOException {
+    this(document, filename, new RenderOptions());
+  }
+
+  public DrawStringLocations(PDDocument document, String filename, RenderOptions options)
+      throws IOException {
     this.document = document; // must initialize here, base class initializes too late
     this.filename = filename;
+    this.options = options;
+    this.pdfRenderer = new PDFRenderer(document);
   }
 
   /**
@@ -54,20 +61,118 @@ public class DrawStringLocations extends PDFTextStripper {
    * @throws IOException If there is an error parsing the document.
    */
   public static void processPdf(String filename) throws IOException {
+    processPdf(filename, MemoryUsageSetting.setupMainMemoryOnly());
+  }
+
+  /**
+   * @param memUsageSetting heap budget for parsed document data, the rest goes to a scratch file
+   * @throws IOException If there is an error parsing the document.
+   */
+  public static void processPdf(String filename, MemoryUsageSetting memUsageSetting)
+      throws IOException {
+    processPdf(filename, memUsageSetting, new RenderOptions());
+  }
+
+  /**
+   * @param options resolution, image type and the part of each page to render
+   * @throws IOException If there is an error parsing the document.
+   */
+  public static void processPdf(
+      String filename, MemoryUsageSetting memUsageSetting, RenderOptions options)
+      throws IOException {
 
-    try (PDDocument document = PDDocument.load(new File(filename))) {
-      DrawStringLocations stripper = new DrawStringLocations(document, filename);
+    DocumentSource source = DocumentSource.of(Paths.get(filename), memUsageSetting);
+    MetricsRecorder recorder = MetricsRecorder.create(source.getName());
+    try (PDDocument document = MetricsRecorder.open(recorder, source)) {
+      LruResourceCache cache =
+          LruResourceCache.install(document, LruResourceCache.DEFAULT_MAX_BYTES);
+      DrawStringLocations stripper = new DrawStringLocations(document, filename, options);
       stripper.setSortByPosition(true);
+      stripper.recorder = recorder;
 
-      for (int page = 0; page < document.getNumberOfPages(); ++page) {
+      for (int page : options.getPages().pages(document.getNumberOfPages())) {
         stripper.stripPage(page);
       }
+      MetricsRecorder.add(recorder, cache);
+      MetricsRecorder.finish(recorder);
+    }
+  }
+
+  /**
+   * Renders on {@code renderThreads} threads, each with its own document, and writes the PNGs on
+   * {@code encodeThreads} more, while this thread records the overlays in page order.
+   *
+   * @throws IOException If there is an error parsing the document.
+   */
+  public static void processPdf(
+      String filename, MemoryUsageSetting memUsageSetting, int renderThreads, int encodeThreads)
+      throws IOException {
+    processPdf(filename, memUsageSetting, new RenderOptions(), renderThreads, encodeThreads);
+  }
+
+  /**
+   * @param options resolution, image type and the part of each page to render
+   * @throws IOException If there is an error parsing the document.
+   */
+  public static void processPdf(
+      String filename,
+      MemoryUsageSetting memUsageSetting,
+      RenderOptions options,
+      int renderThreads,
+      int encodeThreads)
+      throws IOException {
+
+    DocumentSource source = DocumentSource.of(Paths.get(filename), memUsageSetting);
+    MetricsRecorder recorder = MetricsRecorder.create(source.getName());
+    try (PDDocument document = MetricsRecorder.open(recorder, source)) {
+      // shared with the render threads' documents
+      LruResourceCache cache =
+          LruResourceCache.install(document, LruResourceCache.DEFAULT_MAX_BYTES);
+      DrawStringLocations stripper = new DrawStringLocations(document, filename, options);
+      stripper.setSortByPosition(true);
+      stripper.recorder = recorder;
+
+      RenderPipeline pipeline =
+          new RenderPipeline(
+              source, cache, options, renderThreads, encodeThreads, renderThreads, recorder);
+      pipeline.run(document, stripper::recordPage, stripper::imageFile);
+      MetricsRecorder.add(recorder, cache);
+      MetricsRecorder.finish(recorder);
     }
   }
 
   private void stripPage(int page) throws IOException {
-    PDFRenderer pdfRenderer = new PDFRenderer(document);
-    BufferedImage image = pdfRenderer.renderImage(page, SCALE);
+    pageMetrics = recorder != null ? recorder.startPage() : null;
+    Overlay pageOverlay = recordOverlay(page);
+    for (PageTiles.Tile tile : PageTiles.tiles(document.getPage(page), options, pageOverlay)) {
+      long start = pageMetrics != null ? System.nanoTime() : 0;
+      BufferedImage image = PageTiles.render(pdfRenderer, page, tile, options, pageOverlay);
+      long rendered = pageMetrics != null ? System.nanoTime() : 0;
+      ImageIO.write(image, "png", imageFile(page, tile));
+      if (pageMetrics != null) {
+        pageMetrics.add(Metrics.Metric.RENDER_NANOS, rendered - start);
+        pageMetrics.add(Metrics.Metric.ENCODE_NANOS, System.nanoTime() - rendered);
+      }
+    }
+    endPage(page);
+  }
+
+  // a pipelined page reports its overlay only, RenderPipeline adds rendering to the totals
+  private Overlay recordPage(int page) throws IOException {
+    pageMetrics = recorder != null ? recorder.startPage() : null;
+    Overlay pageOverlay = recordOverlay(page);
+    endPage(page);
+    return pageOverlay;
+  }
+
+  private void endPage(int page) {
+    if (pageMetrics != null) {
+      recorder.endPage(page, pageMetrics);
+      pageMetrics = null;
+    }
+  }
+
+  private Overlay recordOverlay(int page) throws IOException {
     PDPage pdPage = document.getPage(page);
     PDRectangle cropBox = pdPage.getCropBox();
 
@@ -101,74 +206,65 @@ public class DrawStringLocations extends PDFTextStripper {
     transAT =
         AffineTransform.getTranslateInstance(-cropBox.getLowerLeftX(), cropBox.getLowerLeftY());
 
-    g2d = image.createGraphics();
-    g2d.setStroke(new BasicStroke(0.1f));
-    g2d.scale(SCALE, SCALE);
+    runBounds.setPage(flipAT, rotateAT);
 
-    setStartPage(page + 1);
-    setEndPage(page + 1);
+    overlay = new Overlay();
+    overlay.setStroke(new BasicStroke(0.1f));
 
-    Writer dummy = new OutputStreamWriter(new ByteArrayOutputStream());
-    writeText(document, dummy);
+    setPageTree(PageSelection.pageTree(document, page));
+    long start = pageMetrics != null ? System.nanoTime() : 0;
+    try {
+      writeText(document, NullWriter.INSTANCE);
+    } finally {
+      setPageTree(null);
+    }
+    if (pageMetrics != null) {
+      pageMetrics.add(Metrics.Metric.INTERPRET_NANOS, System.nanoTime() - start);
+    }
 
-    g2d.dispose();
+    return overlay;
+  }
 
+  @Override
+  protected void processTextPosition(TextPosition text) {
+    if (pageMetrics != null) {
+      pageMetrics.increment(Metrics.Metric.GLYPHS);
+    }
+    super.processTextPosition(text);
+  }
+
+  private File imageFile(int page, PageTiles.Tile tile) {
     String imageFilename = filename;
     int pt = imageFilename.lastIndexOf('.');
-    imageFilename = imageFilename.substring(0, pt) + "-strings-" + (page + 1) + ".png";
-    ImageIO.write(image, "png", new File(imageFilename));
+    imageFilename =
+        imageFilename.substring(0, pt) + "-strings-" + (page + 1) + tile.suffix() + ".png";
+    return new File(imageFilename);
   }
 
   /** Override the default functionality of PDFTextStripper. */
   @Override
   protected void writeString(String string, List<TextPosition> textPositions) {
-    List<Rectangle2D> bounds =
-        textPositions.stream()
-            .map(this::getBounds)
-            .filter(Objects::nonNull)
-            .collect(Collectors.toList());
-
-    if (bounds.size() > 0) {
-      Rectangle2D bound = union(bounds);
-      g2d.setColor(Color.blue);
-      g2d.draw(bound);
-    }
-  }
+    long start = pageMetrics != null ? System.nanoTime() : 0;
+    runBounds.reset();
+    for (TextPosition text : textPositions) {
+      try {
+        GlyphMetricsCache.FontMetrics metrics = glyphMetrics.get(text.getFont());
 
-  private static Rectangle2D union(List<Rectangle2D> bounds) {
-    Rectangle2D result = bounds.get(0);
-    for (int i = 1; i < bounds.size(); ++i) {
-      result = result.createUnion(bounds.get(i));
-    }
-    return result;
-  }
-
-  private Rectangle2D getBounds(TextPosition text) {
-    try {
-      AffineTransform at = text.getTextMatrix().createAffineTransform();
-
-      PDFont font = text.getFont();
-      BoundingBox bbox = font.getBoundingBox();
-
-      // advance width, bbox height (glyph space)
-      float xadvance = font.getWidth(text.getCharacterCodes()[0]); // todo: should iterate all chars
-      Rectangle2D.Float rect =
-          new Rectangle2D.Float(0, bbox.getLowerLeftY(), xadvance, bbox.getHeight());
-
-      if (font instanceof PDType3Font) {
-        // bbox and font matrix are unscaled
-        at.concatenate(font.getFontMatrix().createAffineTransform());
-      } else {
-        // bbox and font matrix are already scaled to 1000
-        at.scale(1 / 1000f, 1 / 1000f);
+        // advance width, bbox height (glyph space)
+        float xadvance = metrics.width(text.getCharacterCodes()[0]); // todo: should iterate all chars
+        runBounds.add(text, metrics, xadvance);
+      } catch (IOException e) {
+        // glyph without bounds
       }
-      Shape s = at.createTransformedShape(rect);
-      s = flipAT.createTransformedShape(s);
-      s = rotateAT.createTransformedShape(s);
+    }
+    if (pageMetrics != null) {
+      pageMetrics.add(Metrics.Metric.BOUNDS_NANOS, System.nanoTime() - start);
+      pageMetrics.increment(Metrics.Metric.WRITE_STRING_CALLS);
+    }
 
-      return s.getBounds2D();
-    } catch (IOException e) {
-      return null;
+    if (runBounds.count() > 0) {
+      overlay.setColor(Color.blue);
+      overlay.draw(runBounds.toRectangle());
     }
   }
 }
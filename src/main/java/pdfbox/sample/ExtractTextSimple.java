@@ -1,43 +1,135 @@
 package pdfbox.sample;
 
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.file.Path;
+import org.apache.pdfbox.io.MemoryUsageSetting;
 import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageTree;
 import org.apache.pdfbox.pdmodel.encryption.AccessPermission;
-import org.apache.pdfbox.text.PDFTextStripper;
 
 public class ExtractTextSimple {
-  public static void processPdf(byte[] input) throws IOException {
-    try (PDDocument document = PDDocument.load(input)) {
-      AccessPermission ap = document.getCurrentAccessPermission();
-      if (!ap.canExtractContent()) {
-        throw new IOException("You do not have permission to extract text");
+
+  // strips the selected pages in one pass, each into a buffer that is written out under a header
+  // at the end of the page
+  private static class PageStripper extends PageTreeStripper {
+    private final StringWriter pageText = new StringWriter();
+    private final PrintWriter out;
+    private int[] pages;
+    private int written;
+
+    PageStripper(PrintWriter out) throws IOException {
+      this.out = out;
+    }
+
+    void writePages(PDDocument document, int[] pages) throws IOException {
+      this.pages = pages;
+      setPageTree(PageSelection.pageTree(document, pages));
+      writeText(document, pageText);
+    }
+
+    @Override
+    protected void processPages(PDPageTree pages) throws IOException {
+      written = 0;
+      super.processPages(pages);
+      // PDFTextStripper skips pages without contents, they still get their header
+      writeEmptyPages(this.pages.length);
+    }
+
+    @Override
+    protected void endPage(PDPage page) throws IOException {
+      super.endPage(page);
+      writeEmptyPages(getCurrentPageNo() - 1);
+      writePage(pageText.toString().trim());
+      pageText.getBuffer().setLength(0);
+    }
+
+    private void writeEmptyPages(int upTo) {
+      while (written < upTo) {
+        writePage("");
       }
+    }
 
-      PDFTextStripper stripper = new PDFTextStripper();
-
-      // This example uses sorting, but in some cases it is more useful to switch it off,
-      // e.g. in some files with columns where the PDF content stream respects the
-      // column order.
-      stripper.setSortByPosition(true);
-
-      for (int p = 1; p <= document.getNumberOfPages(); ++p) {
-        // Set the page interval to extract. If you don't, then all pages would be extracted.
-        stripper.setStartPage(p);
-        stripper.setEndPage(p);
-
-        // let the magic happen
-        String text = stripper.getText(document);
-
-        // do some nice output with a header
-        String pageStr = String.format("page %d:", p);
-        System.out.println(pageStr);
-        for (int i = 0; i < pageStr.length(); ++i) {
-          System.out.print("-");
-        }
-        System.out.println();
-        System.out.println(text.trim());
-        System.out.println();
+    private void writePage(String text) {
+      // do some nice output with a header
+      String pageStr = String.format("page %d:", pages[written++] + 1);
+      out.println(pageStr);
+      for (int i = 0; i < pageStr.length(); ++i) {
+        out.print("-");
       }
+      out.println();
+      out.println(text);
+      out.println();
+    }
+  }
+
+  public static void processPdf(byte[] input) throws IOException {
+    try (PDDocument document = PDDocument.load(input)) {
+      processPdf(document, new OutputStreamWriter(System.out));
+    }
+  }
+
+  public static void processPdf(Path file, MemoryUsageSetting memUsageSetting)
+      throws IOException {
+    try (PDDocument document = PDDocument.load(file.toFile(), memUsageSetting)) {
+      processPdf(document, new OutputStreamWriter(System.out));
+    }
+  }
+
+  /**
+   * Writes the text to {@code output} instead of stdout.
+   *
+   * @return the number of pages processed
+   */
+  public static int processPdf(Path file, MemoryUsageSetting memUsageSetting, Writer output)
+      throws IOException {
+    return processPdf(file, memUsageSetting, PageSelection.ALL, output);
+  }
+
+  /**
+   * Writes the text of the selected pages to {@code output}.
+   *
+   * @return the number of pages processed
+   */
+  public static int processPdf(
+      Path file, MemoryUsageSetting memUsageSetting, PageSelection selection, Writer output)
+      throws IOException {
+    try (PDDocument document = PDDocument.load(file.toFile(), memUsageSetting)) {
+      return processPdf(document, selection, output);
+    }
+  }
+
+  private static int processPdf(PDDocument document, Writer output) throws IOException {
+    return processPdf(document, PageSelection.ALL, output);
+  }
+
+  private static int processPdf(PDDocument document, PageSelection selection, Writer output)
+      throws IOException {
+    AccessPermission ap = document.getCurrentAccessPermission();
+    if (!ap.canExtractContent()) {
+      throw new IOException("You do not have permission to extract text");
+    }
+
+    PrintWriter out = new PrintWriter(output);
+    PageStripper stripper = new PageStripper(out);
+
+    // This example uses sorting, but in some cases it is more useful to switch it off,
+    // e.g. in some files with columns where the PDF content stream respects the
+    // column order.
+    stripper.setSortByPosition(true);
+
+    // let the magic happen: one pass over the selected pages, not one per page
+    int[] pages = selection.pages(document.getNumberOfPages());
+    stripper.writePages(document, pages);
+
+    out.flush();
+    if (out.checkError()) {
+      throw new IOException("Error writing text");
     }
+    return pages.length;
   }
 }
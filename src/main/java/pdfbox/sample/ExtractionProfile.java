@@ -0,0 +1,28 @@
+package pdfbox.sample;
+
+/**
+ * What a {@link TextRunStripper} extracts of each run. The less, the fewer operators it registers
+ * and the less it captures per glyph.
+ */
+public enum ExtractionProfile {
+  /**
+   * Text, font and font size only. Runs have an empty box, colours 0 and rendering mode {@code
+   * FILL}, and no run is dropped for lack of glyph bounds.
+   */
+  TEXT_ONLY(false, false),
+  /**
+   * Text and boxes as well. Colour operators are ignored; runs have colours 0 and rendering mode
+   * {@code FILL}.
+   */
+  TEXT_BOXES(true, false),
+  /** Everything a {@link TextRun} has. The default. */
+  FULL_STYLE(true, true);
+
+  final boolean boxes;
+  final boolean style;
+
+  ExtractionProfile(boolean boxes, boolean style) {
+    this.boxes = boxes;
+    this.style = style;
+  }
+}
@@ -0,0 +1,174 @@
+package pdfbox.sample;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import org.apache.pdfbox.pdmodel.PDDocument;
+
+/**
+ * Extracts text runs for many concurrent callers, e.g. the requests of a server.
+ *
+ * <p>Each document, and with {@code perPage} each chunk of pages, runs on its own thread. Those are
+ * virtual threads when the JVM has them (Java 21 and later) and they were asked for, otherwise
+ * platform threads. Waiting is cheap on virtual threads, the parsing is not: at most {@code
+ * maxConcurrentParses} documents or page chunks are parsed at the same time, everything beyond that
+ * waits for a permit.
+ */
+public final class ExtractionService implements Closeable {
+
+  private final ExecutorService threads;
+  private final ExecutorService parses;
+  private final Semaphore permits;
+  private final int maxConcurrentParses;
+  private final boolean perPage;
+  private final boolean virtual;
+
+  /**
+   * @param useVirtualThreads false always uses platform threads
+   * @param maxConcurrentParses documents or page chunks parsed at the same time, e.g. the number
+   *     of processors
+   * @param perPage split documents of {@link TextRunStripper#MIN_PARALLEL_PAGES} pages or more
+   *     into one chunk per permit
+   */
+  public ExtractionService(boolean useVirtualThreads, int maxConcurrentParses, boolean perPage) {
+    ExecutorService virtualThreads = useVirtualThreads ? newVirtualThreadPerTaskExecutor() : null;
+    this.virtual = virtualThreads != null;
+    this.threads =
+        virtual
+            ? virtualThreads
+            : Executors.newCachedThreadPool(
+                r -> {
+                  Thread thread = new Thread(r, "extraction");
+                  thread.setDaemon(true);
+                  return thread;
+                });
+    this.permits = new Semaphore(maxConcurrentParses);
+    this.parses = new PermitExecutor(threads, permits);
+    this.maxConcurrentParses = maxConcurrentParses;
+    this.perPage = perPage;
+  }
+
+  /** @return whether documents run on virtual threads */
+  public boolean isVirtual() {
+    return virtual;
+  }
+
+  /** Extracts on a new thread, the result completes exceptionally with the extraction's error. */
+  public CompletableFuture<List<List<TextRun>>> submit(DocumentSource source) {
+    return CompletableFuture.supplyAsync(
+        () -> {
+          try {
+            return extract(source);
+          } catch (IOException e) {
+            throw new UncheckedIOException(e);
+          }
+        },
+        threads);
+  }
+
+  /** Extracts on the calling thread, fanning pages out if {@code perPage} was requested. */
+  public List<List<TextRun>> extract(DocumentSource source) throws IOException {
+    int[] pages;
+    MetricsRecorder metrics = MetricsRecorder.create(source.getName());
+    acquire();
+    try (PDDocument document = MetricsRecorder.open(metrics, source)) {
+      pages = PageSelection.ALL.pages(document.getNumberOfPages());
+      if (!perPage
+          || maxConcurrentParses < 2
+          || pages.length < TextRunStripper.MIN_PARALLEL_PAGES) {
+        List<List<TextRun>> pagedTextRuns = TextRunStripper.stripPages(document, pages, metrics);
+        MetricsRecorder.finish(metrics);
+        return pagedTextRuns;
+      }
+    } finally {
+      permits.release();
+    }
+
+    // don't hold a permit while waiting for the chunks, they need them
+    List<List<TextRun>> pagedTextRuns =
+        TextRunStripper.processPdf(source, pages, maxConcurrentParses, parses, metrics);
+    MetricsRecorder.finish(metrics);
+    return pagedTextRuns;
+  }
+
+  @Override
+  public void close() {
+    threads.shutdown();
+  }
+
+  private void acquire() throws InterruptedIOException {
+    try {
+      permits.acquire();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("interrupted while waiting to parse");
+    }
+  }
+
+  // Executors.newVirtualThreadPerTaskExecutor() on Java 21+, this compiles for Java 8
+  private static ExecutorService newVirtualThreadPerTaskExecutor() {
+    try {
+      return (ExecutorService)
+          Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+    } catch (ReflectiveOperationException e) {
+      return null;
+    }
+  }
+
+  // runs each task on the underlying executor once it holds a permit
+  private static final class PermitExecutor extends AbstractExecutorService {
+    private final ExecutorService executor;
+    private final Semaphore permits;
+
+    PermitExecutor(ExecutorService executor, Semaphore permits) {
+      this.executor = executor;
+      this.permits = permits;
+    }
+
+    @Override
+    public void execute(Runnable command) {
+      executor.execute(
+          () -> {
+            permits.acquireUninterruptibly();
+            try {
+              command.run();
+            } finally {
+              permits.release();
+            }
+          });
+    }
+
+    @Override
+    public void shutdown() {
+      executor.shutdown();
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+      return executor.shutdownNow();
+    }
+
+    @Override
+    public boolean isShutdown() {
+      return executor.isShutdown();
+    }
+
+    @Override
+    public boolean isTerminated() {
+      return executor.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+      return executor.awaitTermination(timeout, unit);
+    }
+  }
+}
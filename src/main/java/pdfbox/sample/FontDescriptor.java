@@ -0,0 +1,182 @@
+package pdfbox.sample;
+
+import java.lang.ref.WeakReference;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.WeakHashMap;
+import org.apache.pdfbox.pdmodel.font.PDFont;
+import org.apache.pdfbox.pdmodel.font.PDFontDescriptor;
+
+/**
+ * What a text run keeps of its font: names, style and metrics, without the font program or any
+ * other object of the document, so that runs outlive it.
+ *
+ * <p>Descriptors are interned: equal descriptors are the same instance for as long as any is
+ * reachable, so they may be compared by identity and runs of many documents share them.
+ */
+public final class FontDescriptor {
+
+  // guarded by itself
+  private static final Map<FontDescriptor, WeakReference<FontDescriptor>> INTERNED =
+      new WeakHashMap<>();
+
+  /** The font's base font, or for Type3 fonts its name; may be null. */
+  public final String name;
+
+  /** The font family of the PDF font descriptor, may be null. */
+  public final String family;
+
+  /** The flags of the PDF font descriptor, 0 without one. */
+  public final int flags;
+
+  public final boolean bold;
+  public final boolean italic;
+  public final boolean embedded;
+
+  /** Whether the name has a subset tag, e.g. {@code ABCDEF+Arial}. */
+  public final boolean subset;
+
+  /** Ascent and descent of the PDF font descriptor in glyph space, 0 without one. */
+  public final float ascent;
+
+  public final float descent;
+
+  private final int hash;
+
+  private FontDescriptor(
+      String name,
+      String family,
+      int flags,
+      boolean bold,
+      boolean italic,
+      boolean embedded,
+      boolean subset,
+      float ascent,
+      float descent) {
+    this.name = name;
+    this.family = family;
+    this.flags = flags;
+    this.bold = bold;
+    this.italic = italic;
+    this.embedded = embedded;
+    this.subset = subset;
+    this.ascent = ascent;
+    this.descent = descent;
+    this.hash =
+        Objects.hash(name, family, flags, bold, italic, embedded, subset, ascent, descent);
+  }
+
+  /** @return the interned descriptor of {@code font} */
+  public static FontDescriptor of(PDFont font) {
+    String name = font.getName();
+    PDFontDescriptor descriptor = font.getFontDescriptor();
+    boolean bold = hasStyle(name, "bold");
+    boolean italic = hasStyle(name, "italic") || hasStyle(name, "oblique");
+    if (descriptor == null) {
+      return of(name, null, 0, bold, italic, font.isEmbedded(), isSubset(name), 0, 0);
+    }
+    return of(
+        name,
+        descriptor.getFontFamily(),
+        descriptor.getFlags(),
+        bold || descriptor.isForceBold() || descriptor.getFontWeight() >= 700,
+        italic || descriptor.isItalic() || descriptor.getItalicAngle() != 0,
+        font.isEmbedded(),
+        isSubset(name),
+        descriptor.getAscent(),
+        descriptor.getDescent());
+  }
+
+  /** @return the interned descriptor with these values */
+  public static FontDescriptor of(
+      String name,
+      String family,
+      int flags,
+      boolean bold,
+      boolean italic,
+      boolean embedded,
+      boolean subset,
+      float ascent,
+      float descent) {
+    FontDescriptor descriptor =
+        new FontDescriptor(name, family, flags, bold, italic, embedded, subset, ascent, descent);
+    synchronized (INTERNED) {
+      WeakReference<FontDescriptor> interned = INTERNED.get(descriptor);
+      FontDescriptor existing = interned != null ? interned.get() : null;
+      if (existing != null) {
+        return existing;
+      }
+      INTERNED.put(descriptor, new WeakReference<>(descriptor));
+      return descriptor;
+    }
+  }
+
+  private static boolean hasStyle(String name, String style) {
+    return name != null && name.toLowerCase(Locale.ROOT).contains(style);
+  }
+
+  // a subset tag is six upper case letters and a plus sign
+  private static boolean isSubset(String name) {
+    if (name == null || name.length() < 7 || name.charAt(6) != '+') {
+      return false;
+    }
+    for (int i = 0; i < 6; ++i) {
+      char c = name.charAt(i);
+      if (c < 'A' || c > 'Z') {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof FontDescriptor)) {
+      return false;
+    }
+    FontDescriptor that = (FontDescriptor) o;
+    return hash == that.hash
+        && flags == that.flags
+        && bold == that.bold
+        && italic == that.italic
+        && embedded == that.embedded
+        && subset == that.subset
+        && Float.compare(ascent, that.ascent) == 0
+        && Float.compare(descent, that.descent) == 0
+        && Objects.equals(name, that.name)
+        && Objects.equals(family, that.family);
+  }
+
+  @Override
+  public int hashCode() {
+    return hash;
+  }
+
+  @Override
+  public String toString() {
+    return "FontDescriptor{"
+        + "name="
+        + name
+        + ", family="
+        + family
+        + ", flags="
+        + flags
+        + ", bold="
+        + bold
+        + ", italic="
+        + italic
+        + ", embedded="
+        + embedded
+        + ", subset="
+        + subset
+        + ", ascent="
+        + ascent
+        + ", descent="
+        + descent
+        + '}';
+  }
+}
@@ -0,0 +1,59 @@
+package pdfbox.sample;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The fonts of one document's text runs, numbered from 0 in the order they are first used; a run
+ * refers to its font by {@link TextRun#fontId}. Thread safe.
+ */
+public final class FontTable {
+
+  // descriptors are interned, identity is equality
+  private final Map<FontDescriptor, Integer> ids = new IdentityHashMap<>();
+  private final List<FontDescriptor> fonts = new ArrayList<>();
+  // the fonts as of the last toArray(), replaced once fonts are added
+  private FontDescriptor[] array = new FontDescriptor[0];
+
+  /** @return the id of {@code font}, added unless the table has it */
+  public synchronized int add(FontDescriptor font) {
+    Integer id = ids.get(font);
+    if (id == null) {
+      id = fonts.size();
+      ids.put(font, id);
+      fonts.add(font);
+    }
+    return id;
+  }
+
+  public synchronized FontDescriptor get(int fontId) {
+    return fonts.get(fontId);
+  }
+
+  public synchronized int size() {
+    return fonts.size();
+  }
+
+  /** @return the fonts by id, a copy */
+  public synchronized List<FontDescriptor> getFonts() {
+    return new ArrayList<>(fonts);
+  }
+
+  /**
+   * @return the fonts by id, shared with other callers until fonts are added, so it must not be
+   *     modified
+   */
+  synchronized FontDescriptor[] toArray() {
+    if (array.length != fonts.size()) {
+      array = fonts.toArray(new FontDescriptor[0]);
+    }
+    return array;
+  }
+
+  @Override
+  public synchronized String toString() {
+    return "FontTable{" + "fonts=" + fonts + '}';
+  }
+}
@@ -0,0 +1,258 @@
+package pdfbox.sample;
+
+import java.awt.geom.AffineTransform;
+import java.awt.geom.GeneralPath;
+import java.awt.geom.Rectangle2D;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.fontbox.util.BoundingBox;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.font.PDCIDFontType2;
+import org.apache.pdfbox.pdmodel.font.PDFont;
+import org.apache.pdfbox.pdmodel.font.PDTrueTypeFont;
+import org.apache.pdfbox.pdmodel.font.PDType0Font;
+import org.apache.pdfbox.pdmodel.font.PDType3CharProc;
+import org.apache.pdfbox.pdmodel.font.PDType3Font;
+import org.apache.pdfbox.pdmodel.font.PDVectorFont;
+
+/**
+ * Per document cache of glyph outline bounds: for each font its font matrix and units per em, and
+ * for each character code the bounds of the glyph's outline, so that an outline is built once per
+ * font and code instead of for every glyph shown.
+ *
+ * <p>Fonts are keyed by identity. Bounds live in primitive arrays, directly indexed for single byte
+ * codes and in a bounded open addressing table for the rest.
+ */
+final class GlyphBoundsCache {
+
+  private static final Log LOG = LogFactory.getLog(GlyphBoundsCache.class);
+
+  static final int MAX_FONTS = 256;
+
+  private final Map<PDFont, FontBounds> fonts = new IdentityHashMap<>();
+
+  // consecutive glyphs nearly always share their font
+  private PDFont lastFont;
+  private FontBounds lastBounds;
+
+  FontBounds get(PDFont font) throws IOException {
+    if (font == lastFont) {
+      return lastBounds;
+    }
+    FontBounds bounds = fonts.get(font);
+    if (bounds == null) {
+      if (fonts.size() == MAX_FONTS) {
+        fonts.clear();
+      }
+      bounds = new FontBounds(font);
+      fonts.put(font, bounds);
+    }
+    lastFont = font;
+    lastBounds = bounds;
+    return bounds;
+  }
+
+  void clear() {
+    fonts.clear();
+    lastFont = null;
+    lastBounds = null;
+  }
+
+  static final class FontBounds {
+
+    static final int MAX_WIDE_CODES = 4096;
+    private static final int INITIAL_WIDE_CODES = 16;
+
+    // per code: x, y, width, height; NaN x marks a code not looked up yet, NaN width one without
+    // an outline
+    private static final int STRIDE = 4;
+
+    final PDFont font;
+
+    /** The font matrix as a transform, shared, must not be modified. */
+    final AffineTransform fontMatrix;
+
+    /**
+     * 1000 / units per em for TrueType outlines, which are not in 1/1000 text space units, 1 for
+     * other fonts.
+     */
+    final double unitsPerEmScale;
+
+    private final double[] byteBounds = new double[STRIDE * 256];
+
+    // codes above 255, open addressing with code + 1 as key, 0 marks a free slot; kept at most
+    // half full, allocated on the first such code and grown up to MAX_WIDE_CODES
+    private int[] wideCodes;
+    private double[] wideBounds;
+    private int wideCount;
+
+    FontBounds(PDFont font) throws IOException {
+      this.font = font;
+      fontMatrix = font.getFontMatrix().createAffineTransform();
+      unitsPerEmScale = unitsPerEmScale(font);
+      Arrays.fill(byteBounds, Float.NaN);
+      if (!(font instanceof PDType3Font) && !(font instanceof PDVectorFont)) {
+        // shouldn't happen, its glyphs get no bounds
+        LOG.warn("Unknown font class: " + font.getClass());
+      }
+    }
+
+    /** @return the font's outline to text space transform applied to {@code at} */
+    AffineTransform concatenate(AffineTransform at) {
+      at.concatenate(fontMatrix);
+      if (unitsPerEmScale != 1) {
+        at.scale(unitsPerEmScale, unitsPerEmScale);
+      }
+      return at;
+    }
+
+    /**
+     * @return the bounds of the glyph's outline in outline units, or null if it has none; the
+     *     real bounds except for Type3 glyphs, whose glyph bbox is used
+     */
+    Rectangle2D bounds(int code) throws IOException {
+      double[] bounds = new double[STRIDE];
+      if (!bounds(code, bounds)) {
+        return null;
+      }
+      return new Rectangle2D.Double(bounds[0], bounds[1], bounds[2], bounds[3]);
+    }
+
+    /**
+     * Stores x, y, width and height of the glyph's outline bounds in {@code bounds}.
+     *
+     * @return false if the glyph has no outline
+     */
+    boolean bounds(int code, double[] bounds) throws IOException {
+      double[] table;
+      int offset;
+      if (code >= 0 && code < 256) {
+        table = byteBounds;
+        offset = STRIDE * code;
+        if (Double.isNaN(table[offset])) {
+          store(table, offset, computeBounds(code));
+        }
+      } else {
+        if (wideCodes == null) {
+          wideCodes = new int[2 * INITIAL_WIDE_CODES];
+          wideBounds = new double[STRIDE * 2 * INITIAL_WIDE_CODES];
+        }
+        int i = wideSlot(code);
+        if (wideCodes[i] == 0 && 2 * wideCount == wideCodes.length) {
+          if (wideCount < MAX_WIDE_CODES) {
+            growWide();
+            i = wideSlot(code);
+          }
+        }
+        table = wideBounds;
+        offset = STRIDE * i;
+        if (wideCodes[i] == 0) {
+          if (wideCount == MAX_WIDE_CODES) {
+            // table full, compute without caching
+            table = bounds;
+            offset = 0;
+          } else {
+            wideCodes[i] = code + 1;
+            wideCount++;
+          }
+          store(table, offset, computeBounds(code));
+        }
+      }
+
+      if (Double.isNaN(table[offset + 2])) {
+        return false;
+      }
+      System.arraycopy(table, offset, bounds, 0, STRIDE);
+      return true;
+    }
+
+    // the slot of code, or the free slot it would go to
+    private int wideSlot(int code) {
+      int mask = wideCodes.length - 1;
+      int i = (code * 0x9E3779B9 >>> 16) & mask;
+      while (wideCodes[i] != 0 && wideCodes[i] != code + 1) {
+        i = (i + 1) & mask;
+      }
+      return i;
+    }
+
+    private void growWide() {
+      int[] codes = wideCodes;
+      double[] oldBounds = wideBounds;
+      wideCodes = new int[2 * codes.length];
+      wideBounds = new double[2 * oldBounds.length];
+      for (int slot = 0; slot < codes.length; ++slot) {
+        if (codes[slot] != 0) {
+          int i = wideSlot(codes[slot] - 1);
+          wideCodes[i] = codes[slot];
+          System.arraycopy(oldBounds, STRIDE * slot, wideBounds, STRIDE * i, STRIDE);
+        }
+      }
+    }
+
+    private static void store(double[] table, int offset, Rectangle2D bounds) {
+      if (bounds == null) {
+        table[offset] = 0;
+        table[offset + 2] = Double.NaN;
+      } else {
+        table[offset] = bounds.getX();
+        table[offset + 1] = bounds.getY();
+        table[offset + 2] = bounds.getWidth();
+        table[offset + 3] = bounds.getHeight();
+      }
+    }
+
+    private Rectangle2D computeBounds(int code) throws IOException {
+      GeneralPath path = null;
+      if (font instanceof PDType3Font) {
+        // It is difficult to calculate the real individual glyph bounds for type 3 fonts
+        // because these are not vector fonts, the content stream could contain almost anything
+        // that is found in page content streams.
+        PDType3Font t3Font = (PDType3Font) font;
+        PDType3CharProc charProc = t3Font.getCharProc(code);
+        if (charProc != null) {
+          BoundingBox fontBBox = t3Font.getBoundingBox();
+          PDRectangle glyphBBox = charProc.getGlyphBBox();
+          if (glyphBBox != null) {
+            // PDFBOX-3850: glyph bbox could be larger than the font bbox
+            glyphBBox.setLowerLeftX(
+                Math.max(fontBBox.getLowerLeftX(), glyphBBox.getLowerLeftX()));
+            glyphBBox.setLowerLeftY(
+                Math.max(fontBBox.getLowerLeftY(), glyphBBox.getLowerLeftY()));
+            glyphBBox.setUpperRightX(
+                Math.min(fontBBox.getUpperRightX(), glyphBBox.getUpperRightX()));
+            glyphBBox.setUpperRightY(
+                Math.min(fontBBox.getUpperRightY(), glyphBBox.getUpperRightY()));
+            path = glyphBBox.toGeneralPath();
+          }
+        }
+      } else if (font instanceof PDVectorFont) {
+        path = ((PDVectorFont) font).getPath(code);
+      }
+      return path == null ? null : path.getBounds2D();
+    }
+
+    private static double unitsPerEmScale(PDFont font) throws IOException {
+      if (font instanceof PDTrueTypeFont) {
+        PDTrueTypeFont ttFont = (PDTrueTypeFont) font;
+        return 1000d / ttFont.getTrueTypeFont().getHeader().getUnitsPerEm();
+      }
+      if (font instanceof PDType0Font) {
+        PDType0Font t0font = (PDType0Font) font;
+        if (t0font.getDescendantFont() instanceof PDCIDFontType2) {
+          int unitsPerEm =
+              ((PDCIDFontType2) t0font.getDescendantFont())
+                  .getTrueTypeFont()
+                  .getHeader()
+                  .getUnitsPerEm();
+          return 1000d / unitsPerEm;
+        }
+      }
+      return 1;
+    }
+  }
+}
@@ -0,0 +1,143 @@
+package pdfbox.sample;
+
+import java.awt.geom.AffineTransform;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import org.apache.fontbox.util.BoundingBox;
+import org.apache.pdfbox.pdmodel.font.PDFont;
+import org.apache.pdfbox.pdmodel.font.PDType3Font;
+
+/**
+ * Per document cache of the font metrics glyph bounds are computed from: the font bounding box, the
+ * glyph to text space transform and the advance width of each character code.
+ *
+ * <p>Fonts are keyed by identity. Widths live in primitive arrays, directly indexed for single
+ * byte codes and in a bounded open addressing table for the rest.
+ */
+final class GlyphMetricsCache {
+
+  static final int MAX_FONTS = 256;
+
+  private final Map<PDFont, FontMetrics> fonts = new IdentityHashMap<>();
+
+  // consecutive glyphs nearly always share their font
+  private PDFont lastFont;
+  private FontMetrics lastMetrics;
+
+  FontMetrics get(PDFont font) throws IOException {
+    if (font == lastFont) {
+      return lastMetrics;
+    }
+    FontMetrics metrics = fonts.get(font);
+    if (metrics == null) {
+      if (fonts.size() == MAX_FONTS) {
+        fonts.clear();
+      }
+      metrics = new FontMetrics(font);
+      fonts.put(font, metrics);
+    }
+    lastFont = font;
+    lastMetrics = metrics;
+    return metrics;
+  }
+
+  void clear() {
+    fonts.clear();
+    lastFont = null;
+    lastMetrics = null;
+  }
+
+  static final class FontMetrics {
+
+    static final int MAX_WIDE_CODES = 4096;
+    private static final int INITIAL_WIDE_CODES = 16;
+
+    final PDFont font;
+    final float bboxLowerLeftY;
+    final float bboxHeight;
+
+    /**
+     * Glyph space to text space: the font matrix for Type3 fonts, whose bbox and widths are
+     * unscaled, a 1/1000 scale for all others.
+     */
+    final AffineTransform glyphToText;
+
+    private final float[] byteWidths = new float[256];
+
+    // codes above 255, open addressing with code + 1 as key, 0 marks a free slot; kept at most
+    // half full, allocated on the first such code and grown up to MAX_WIDE_CODES
+    private int[] wideCodes;
+    private float[] wideWidths;
+    private int wideCount;
+
+    FontMetrics(PDFont font) throws IOException {
+      this.font = font;
+      BoundingBox bbox = font.getBoundingBox();
+      bboxLowerLeftY = bbox.getLowerLeftY();
+      bboxHeight = bbox.getHeight();
+      if (font instanceof PDType3Font) {
+        glyphToText = font.getFontMatrix().createAffineTransform();
+      } else {
+        glyphToText = AffineTransform.getScaleInstance(1 / 1000f, 1 / 1000f);
+      }
+      Arrays.fill(byteWidths, Float.NaN);
+    }
+
+    float width(int code) throws IOException {
+      if (code >= 0 && code < byteWidths.length) {
+        float width = byteWidths[code];
+        if (Float.isNaN(width)) {
+          width = font.getWidth(code);
+          byteWidths[code] = width;
+        }
+        return width;
+      }
+
+      if (wideCodes == null) {
+        wideCodes = new int[2 * INITIAL_WIDE_CODES];
+        wideWidths = new float[2 * INITIAL_WIDE_CODES];
+      }
+      int i = wideSlot(code);
+      if (wideCodes[i] != 0) {
+        return wideWidths[i];
+      }
+      float width = font.getWidth(code);
+      if (wideCount < MAX_WIDE_CODES) {
+        if (2 * wideCount == wideCodes.length) {
+          growWide();
+          i = wideSlot(code);
+        }
+        wideCodes[i] = code + 1;
+        wideWidths[i] = width;
+        wideCount++;
+      }
+      return width;
+    }
+
+    // the slot of code, or the free slot it would go to
+    private int wideSlot(int code) {
+      int mask = wideCodes.length - 1;
+      int i = (code * 0x9E3779B9 >>> 16) & mask;
+      while (wideCodes[i] != 0 && wideCodes[i] != code + 1) {
+        i = (i + 1) & mask;
+      }
+      return i;
+    }
+
+    private void growWide() {
+      int[] codes = wideCodes;
+      float[] widths = wideWidths;
+      wideCodes = new int[2 * codes.length];
+      wideWidths = new float[2 * widths.length];
+      for (int slot = 0; slot < codes.length; ++slot) {
+        if (codes[slot] != 0) {
+          int i = wideSlot(codes[slot] - 1);
+          wideCodes[i] = codes[slot];
+          wideWidths[i] = widths[slot];
+        }
+      }
+    }
+  }
+}
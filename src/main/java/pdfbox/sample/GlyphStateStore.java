@@ -0,0 +1,103 @@
+package pdfbox.sample;
+
+import java.util.Arrays;
+import org.apache.pdfbox.pdmodel.graphics.color.PDColor;
+import org.apache.pdfbox.pdmodel.graphics.state.RenderingMode;
+import org.apache.pdfbox.text.TextPosition;
+
+/**
+ * Graphics state captured per glyph, kept in parallel arrays indexed by glyph ordinal. Colours are
+ * kept as they are, converting them is left to the glyphs that need it.
+ *
+ * <p>Glyphs are found again by identity through an open addressing table of ordinals, so once the
+ * arrays have grown to the page's glyph count neither recording nor lookup allocates.
+ */
+final class GlyphStateStore {
+
+  private static final RenderingMode[] RENDERING_MODES = RenderingMode.values();
+  private static final int INITIAL_CAPACITY = 256;
+
+  private TextPosition[] glyphs = new TextPosition[INITIAL_CAPACITY];
+  private byte[] renderingMode = new byte[INITIAL_CAPACITY];
+  private PDColor[] strokingColor = new PDColor[INITIAL_CAPACITY];
+  private PDColor[] nonStrokingColor = new PDColor[INITIAL_CAPACITY];
+  private int size;
+
+  // ordinal + 1 per slot, 0 marks a free slot; kept at most half full
+  private int[] slots = new int[2 * INITIAL_CAPACITY];
+
+  /** @return the ordinal of the recorded glyph */
+  int add(TextPosition glyph, RenderingMode mode, PDColor stroking, PDColor nonStroking) {
+    if (size == glyphs.length) {
+      grow();
+    }
+    int ordinal = size++;
+    glyphs[ordinal] = glyph;
+    renderingMode[ordinal] = (byte) mode.ordinal();
+    strokingColor[ordinal] = stroking;
+    nonStrokingColor[ordinal] = nonStroking;
+    insert(ordinal);
+    return ordinal;
+  }
+
+  /** @return the ordinal the glyph was recorded under, or -1 */
+  int indexOf(TextPosition glyph) {
+    int mask = slots.length - 1;
+    for (int i = slot(glyph, mask); slots[i] != 0; i = (i + 1) & mask) {
+      int ordinal = slots[i] - 1;
+      if (glyphs[ordinal] == glyph) {
+        return ordinal;
+      }
+    }
+    return -1;
+  }
+
+  RenderingMode renderingMode(int ordinal) {
+    return RENDERING_MODES[renderingMode[ordinal]];
+  }
+
+  PDColor strokingColor(int ordinal) {
+    return strokingColor[ordinal];
+  }
+
+  PDColor nonStrokingColor(int ordinal) {
+    return nonStrokingColor[ordinal];
+  }
+
+  /** Forgets all glyphs, keeping the grown arrays for the next page. */
+  void clear() {
+    Arrays.fill(glyphs, 0, size, null);
+    Arrays.fill(strokingColor, 0, size, null);
+    Arrays.fill(nonStrokingColor, 0, size, null);
+    Arrays.fill(slots, 0);
+    size = 0;
+  }
+
+  private void insert(int ordinal) {
+    int mask = slots.length - 1;
+    int i = slot(glyphs[ordinal], mask);
+    while (slots[i] != 0) {
+      i = (i + 1) & mask;
+    }
+    slots[i] = ordinal + 1;
+  }
+
+  private void grow() {
+    int capacity = glyphs.length * 2;
+    glyphs = Arrays.copyOf(glyphs, capacity);
+    renderingMode = Arrays.copyOf(renderingMode, capacity);
+    strokingColor = Arrays.copyOf(strokingColor, capacity);
+    nonStrokingColor = Arrays.copyOf(nonStrokingColor, capacity);
+
+    slots = new int[2 * capacity];
+    for (int ordinal = 0; ordinal < size; ++ordinal) {
+      insert(ordinal);
+    }
+  }
+
+  private static int slot(TextPosition glyph, int mask) {
+    // TextPosition.hashCode hashes its fields, identity is both cheaper and what we mean here
+    int h = System.identityHashCode(glyph) * 0x9E3779B9;
+    return (h ^ (h >>> 16)) & mask;
+  }
+}
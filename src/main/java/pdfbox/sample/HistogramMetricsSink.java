@@ -0,0 +1,140 @@
+package pdfbox.sample;
+
+import java.util.Locale;
+
+/**
+ * Keeps a histogram per metric of all pages and one of all documents, for percentiles over a run.
+ *
+ * <p>Values are counted in logarithmic buckets with 16 linear steps each, so a percentile is
+ * reported as its bucket's upper bound, at most 1/16 above the true value. Memory is fixed at a
+ * few kilobytes per histogram whatever the number of values.
+ */
+public final class HistogramMetricsSink implements MetricsSink {
+
+  public enum Level {
+    PAGE,
+    DOCUMENT
+  }
+
+  private final Histogram[][] histograms = new Histogram[2][Metrics.METRICS.length];
+
+  public HistogramMetricsSink() {
+    for (Histogram[] level : histograms) {
+      for (int i = 0; i < level.length; ++i) {
+        level[i] = new Histogram();
+      }
+    }
+  }
+
+  @Override
+  public synchronized void page(String document, int pageIndex, Metrics metrics) {
+    record(Level.PAGE, metrics);
+  }
+
+  @Override
+  public synchronized void document(String document, int pageCount, Metrics metrics) {
+    record(Level.DOCUMENT, metrics);
+  }
+
+  /** @return the number of pages or documents recorded */
+  public synchronized long getCount(Level level) {
+    return histograms[level.ordinal()][0].count;
+  }
+
+  /** @param percentile between 0 and 100 */
+  public synchronized long getPercentile(Level level, Metrics.Metric metric, double percentile) {
+    return histograms[level.ordinal()][metric.ordinal()].percentile(percentile);
+  }
+
+  public synchronized long getMax(Level level, Metrics.Metric metric) {
+    return histograms[level.ordinal()][metric.ordinal()].max;
+  }
+
+  /** p50, p90, p99 and max of every metric, per page and per document. */
+  @Override
+  public synchronized String toString() {
+    StringBuilder builder = new StringBuilder();
+    for (Level level : Level.values()) {
+      builder.append(
+          String.format(
+              Locale.ROOT,
+              "%-8s %-18s %14s %14s %14s %14s%n",
+              level.name().toLowerCase(Locale.ROOT) + "s",
+              "n=" + getCount(level),
+              "p50",
+              "p90",
+              "p99",
+              "max"));
+      for (Metrics.Metric metric : Metrics.METRICS) {
+        builder.append(
+            String.format(
+                Locale.ROOT,
+                "         %-18s %14d %14d %14d %14d%n",
+                metric.key(),
+                getPercentile(level, metric, 50),
+                getPercentile(level, metric, 90),
+                getPercentile(level, metric, 99),
+                getMax(level, metric)));
+      }
+    }
+    return builder.toString();
+  }
+
+  private void record(Level level, Metrics metrics) {
+    Histogram[] row = histograms[level.ordinal()];
+    for (Metrics.Metric metric : Metrics.METRICS) {
+      row[metric.ordinal()].record(metrics.get(metric));
+    }
+  }
+
+  private static final class Histogram {
+    // values below 16 count exactly, above in 16 steps per power of two
+    private static final int STEPS = 16;
+    private static final int STEP_BITS = 4;
+
+    final long[] counts = new long[STEPS * (64 - STEP_BITS + 1)];
+    long count;
+    long max;
+
+    void record(long value) {
+      value = Math.max(0, value);
+      counts[bucket(value)]++;
+      count++;
+      max = Math.max(max, value);
+    }
+
+    long percentile(double percentile) {
+      if (count == 0) {
+        return 0;
+      }
+      long rank = (long) Math.ceil(percentile / 100 * count);
+      long seen = 0;
+      for (int i = 0; i < counts.length; ++i) {
+        seen += counts[i];
+        if (seen >= Math.max(1, rank)) {
+          return Math.min(upperBound(i), max);
+        }
+      }
+      return max;
+    }
+
+    private static int bucket(long value) {
+      if (value < STEPS) {
+        return (int) value;
+      }
+      int exponent = 63 - Long.numberOfLeadingZeros(value);
+      int step = (int) (value >>> (exponent - STEP_BITS)) & (STEPS - 1);
+      return STEPS * (exponent - STEP_BITS + 1) + step;
+    }
+
+    private static long upperBound(int bucket) {
+      if (bucket < STEPS) {
+        return bucket;
+      }
+      int exponent = bucket / STEPS + STEP_BITS - 1;
+      long step = bucket % STEPS;
+      long width = 1L << (exponent - STEP_BITS);
+      return (1L << exponent) + (step + 1) * width - 1;
+    }
+  }
+}
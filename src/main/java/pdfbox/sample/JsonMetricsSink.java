@@ -0,0 +1,63 @@
+package pdfbox.sample;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes one JSON object per line and record, e.g. {@code {"document":"a.pdf","page":0,
+ * "parseNanos":0,...}} for a page and {@code {"document":"a.pdf","pages":12,...}} for a document.
+ * Lines are flushed at the end of each document.
+ */
+public final class JsonMetricsSink implements MetricsSink {
+
+  private final Writer out;
+  private final StringBuilder line = new StringBuilder(512);
+
+  public JsonMetricsSink(Writer out) {
+    this.out = out;
+  }
+
+  @Override
+  public synchronized void page(String document, int pageIndex, Metrics metrics) {
+    write(document, "page", pageIndex, metrics, false);
+  }
+
+  @Override
+  public synchronized void document(String document, int pageCount, Metrics metrics) {
+    write(document, "pages", pageCount, metrics, true);
+  }
+
+  private void write(String document, String countKey, int count, Metrics metrics, boolean flush) {
+    line.setLength(0);
+    line.append("{\"document\":");
+    appendString(document);
+    line.append(",\"").append(countKey).append("\":").append(count);
+    for (Metrics.Metric metric : Metrics.METRICS) {
+      line.append(",\"").append(metric.key()).append("\":").append(metrics.get(metric));
+    }
+    line.append("}\n");
+    try {
+      out.append(line);
+      if (flush) {
+        out.flush();
+      }
+    } catch (IOException e) {
+      e.printStackTrace();
+    }
+  }
+
+  private void appendString(String value) {
+    line.append('"');
+    for (int i = 0; i < value.length(); ++i) {
+      char c = value.charAt(i);
+      if (c == '"' || c == '\\') {
+        line.append('\\').append(c);
+      } else if (c < 0x20) {
+        line.append(String.format("\\u%04x", (int) c));
+      } else {
+        line.append(c);
+      }
+    }
+    line.append('"');
+  }
+}
@@ -0,0 +1,256 @@
+package pdfbox.sample;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSObject;
+import org.apache.pdfbox.cos.COSStream;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.ResourceCache;
+import org.apache.pdfbox.pdmodel.documentinterchange.markedcontent.PDPropertyList;
+import org.apache.pdfbox.pdmodel.font.PDFont;
+import org.apache.pdfbox.pdmodel.font.PDFontDescriptor;
+import org.apache.pdfbox.pdmodel.graphics.PDXObject;
+import org.apache.pdfbox.pdmodel.graphics.color.PDColorSpace;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
+import org.apache.pdfbox.pdmodel.graphics.pattern.PDAbstractPattern;
+import org.apache.pdfbox.pdmodel.graphics.shading.PDShading;
+import org.apache.pdfbox.pdmodel.graphics.state.PDExtendedGraphicsState;
+
+/**
+ * A {@link ResourceCache} that keeps the least recently used resources up to an estimated size,
+ * instead of the soft references of the default cache, and counts its hits and misses.
+ *
+ * <p>Fonts keep their glyph outlines and images their decoded raster, softly referenced, so both
+ * are reused by every page that shares them for as long as they stay cached. Sizes are estimates:
+ * an image counts with its decoded RGB raster, a font with its embedded font program and a fixed
+ * overhead, anything else with its stream length or a small constant. The glyph outlines a font
+ * builds up are not counted, so they are not capped.
+ *
+ * <p>Keys are the document's indirect objects, so one cache can serve several documents, e.g. the
+ * copies opened by render workers, sharing its memory cap. All methods are synchronized.
+ */
+public final class LruResourceCache implements ResourceCache {
+
+  public static final long DEFAULT_MAX_BYTES = 128L * 1024 * 1024;
+
+  private static final long SMALL_RESOURCE_BYTES = 1024;
+  private static final long FONT_OVERHEAD_BYTES = 16 * 1024;
+  // PDImageXObject decodes to an int RGB or ARGB image
+  private static final long DECODED_BYTES_PER_PIXEL = 4;
+
+  private enum Kind {
+    FONT,
+    COLOR_SPACE,
+    EXT_G_STATE,
+    SHADING,
+    PATTERN,
+    PROPERTIES,
+    XOBJECT
+  }
+
+  private static final class Entry {
+    final Kind kind;
+    final Object resource;
+    final long bytes;
+
+    Entry(Kind kind, Object resource, long bytes) {
+      this.kind = kind;
+      this.resource = resource;
+      this.bytes = bytes;
+    }
+  }
+
+  private final long maxBytes;
+  private final Map<COSObject, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+  private final long[] hits = new long[Kind.values().length];
+  private final long[] misses = new long[Kind.values().length];
+  private long bytes;
+  private long evictions;
+
+  public LruResourceCache(long maxBytes) {
+    this.maxBytes = maxBytes;
+  }
+
+  /** Installs a new cache of {@code maxBytes} on {@code document}. */
+  public static LruResourceCache install(PDDocument document, long maxBytes) {
+    LruResourceCache cache = new LruResourceCache(maxBytes);
+    document.setResourceCache(cache);
+    return cache;
+  }
+
+  @Override
+  public PDFont getFont(COSObject indirect) {
+    return get(Kind.FONT, indirect, PDFont.class);
+  }
+
+  @Override
+  public PDColorSpace getColorSpace(COSObject indirect) {
+    return get(Kind.COLOR_SPACE, indirect, PDColorSpace.class);
+  }
+
+  @Override
+  public PDExtendedGraphicsState getExtGState(COSObject indirect) {
+    return get(Kind.EXT_G_STATE, indirect, PDExtendedGraphicsState.class);
+  }
+
+  @Override
+  public PDShading getShading(COSObject indirect) {
+    return get(Kind.SHADING, indirect, PDShading.class);
+  }
+
+  @Override
+  public PDAbstractPattern getPattern(COSObject indirect) {
+    return get(Kind.PATTERN, indirect, PDAbstractPattern.class);
+  }
+
+  @Override
+  public PDPropertyList getProperties(COSObject indirect) {
+    return get(Kind.PROPERTIES, indirect, PDPropertyList.class);
+  }
+
+  @Override
+  public PDXObject getXObject(COSObject indirect) {
+    return get(Kind.XOBJECT, indirect, PDXObject.class);
+  }
+
+  @Override
+  public void put(COSObject indirect, PDFont font) {
+    put(indirect, new Entry(Kind.FONT, font, FONT_OVERHEAD_BYTES + fontProgramBytes(font)));
+  }
+
+  @Override
+  public void put(COSObject indirect, PDColorSpace colorSpace) {
+    put(indirect, new Entry(Kind.COLOR_SPACE, colorSpace, SMALL_RESOURCE_BYTES));
+  }
+
+  @Override
+  public void put(COSObject indirect, PDExtendedGraphicsState extGState) {
+    put(indirect, new Entry(Kind.EXT_G_STATE, extGState, SMALL_RESOURCE_BYTES));
+  }
+
+  @Override
+  public void put(COSObject indirect, PDShading shading) {
+    put(indirect, new Entry(Kind.SHADING, shading, SMALL_RESOURCE_BYTES));
+  }
+
+  @Override
+  public void put(COSObject indirect, PDAbstractPattern pattern) {
+    put(indirect, new Entry(Kind.PATTERN, pattern, SMALL_RESOURCE_BYTES));
+  }
+
+  @Override
+  public void put(COSObject indirect, PDPropertyList propertyList) {
+    put(indirect, new Entry(Kind.PROPERTIES, propertyList, SMALL_RESOURCE_BYTES));
+  }
+
+  @Override
+  public void put(COSObject indirect, PDXObject xobject) {
+    long size;
+    if (xobject instanceof PDImageXObject) {
+      PDImageXObject image = (PDImageXObject) xobject;
+      size = DECODED_BYTES_PER_PIXEL * image.getWidth() * image.getHeight();
+    } else {
+      size = streamBytes(xobject.getCOSObject());
+    }
+    put(indirect, new Entry(Kind.XOBJECT, xobject, size));
+  }
+
+  public synchronized long getHits() {
+    long sum = 0;
+    for (long hit : hits) {
+      sum += hit;
+    }
+    return sum;
+  }
+
+  public synchronized long getMisses() {
+    long sum = 0;
+    for (long miss : misses) {
+      sum += miss;
+    }
+    return sum;
+  }
+
+  public synchronized long getEvictions() {
+    return evictions;
+  }
+
+  /** @return the estimated size of the cached resources */
+  public synchronized long getBytes() {
+    return bytes;
+  }
+
+  /** Hit rates overall, for fonts and for XObjects, and the cache's fill. */
+  @Override
+  public synchronized String toString() {
+    return String.format(
+        Locale.ROOT,
+        "resource cache: %s hits (fonts %s, xobjects %s), %d entries, %.1f of %.1f MB, "
+            + "%d evicted",
+        hitRate(getHits(), getMisses()),
+        hitRate(hits[Kind.FONT.ordinal()], misses[Kind.FONT.ordinal()]),
+        hitRate(hits[Kind.XOBJECT.ordinal()], misses[Kind.XOBJECT.ordinal()]),
+        entries.size(),
+        bytes / 1048576.0,
+        maxBytes / 1048576.0,
+        evictions);
+  }
+
+  private synchronized <T> T get(Kind kind, COSObject indirect, Class<T> type) {
+    Entry entry = entries.get(indirect);
+    if (entry == null || entry.kind != kind || !type.isInstance(entry.resource)) {
+      misses[kind.ordinal()]++;
+      return null;
+    }
+    hits[kind.ordinal()]++;
+    return type.cast(entry.resource);
+  }
+
+  private synchronized void put(COSObject indirect, Entry entry) {
+    Entry previous = entries.put(indirect, entry);
+    if (previous != null) {
+      bytes -= previous.bytes;
+    }
+    bytes += entry.bytes;
+
+    // the newest entry is last, keep it even if it is larger than the cap on its own
+    Iterator<Entry> eldest = entries.values().iterator();
+    while (bytes > maxBytes && entries.size() > 1) {
+      bytes -= eldest.next().bytes;
+      eldest.remove();
+      evictions++;
+    }
+  }
+
+  private static long fontProgramBytes(PDFont font) {
+    PDFontDescriptor descriptor = font.getFontDescriptor();
+    if (descriptor == null) {
+      return 0;
+    }
+    COSDictionary dictionary = descriptor.getCOSObject();
+    long size = 0;
+    for (COSName key : new COSName[] {COSName.FONT_FILE, COSName.FONT_FILE2, COSName.FONT_FILE3}) {
+      size += streamBytes(dictionary.getDictionaryObject(key));
+    }
+    return size;
+  }
+
+  private static long streamBytes(COSBase base) {
+    if (base instanceof COSStream) {
+      return Math.max(SMALL_RESOURCE_BYTES, ((COSStream) base).getLength());
+    }
+    return base == null ? 0 : SMALL_RESOURCE_BYTES;
+  }
+
+  private static String hitRate(long hits, long misses) {
+    long lookups = hits + misses;
+    return lookups == 0
+        ? "n/a"
+        : String.format(Locale.ROOT, "%.1f%%", 100.0 * hits / lookups);
+  }
+}
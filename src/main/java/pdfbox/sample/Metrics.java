@@ -0,0 +1,138 @@
+package pdfbox.sample;
+
+import java.io.OutputStreamWriter;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Counters and timings of one page, or totals of one document, as handed to a {@link MetricsSink}.
+ *
+ * <p>Recording is off unless a sink is installed with {@link #setDefaultSink(MetricsSink)} or the
+ * {@code metrics} system property, read when the sink is first asked for: {@code json} logs the
+ * metrics of every page and document to stderr, {@code histogram} collects their percentiles in a
+ * {@link HistogramMetricsSink}. With recording off the strippers pay one null check per glyph and
+ * per string.
+ */
+public final class Metrics {
+
+  public enum Metric {
+    /** Loading the document, up to its page tree; per document only. */
+    PARSE_NANOS("parseNanos"),
+    /** Running the content stream and writing its strings, bounds included. */
+    INTERPRET_NANOS("interpretNanos"),
+    BOUNDS_NANOS("boundsNanos"),
+    RENDER_NANOS("renderNanos"),
+    ENCODE_NANOS("encodeNanos"),
+    GLYPHS("glyphs"),
+    WRITE_STRING_CALLS("writeStringCalls"),
+    /** Heap allocated by the recording thread, 0 if the JVM can't tell. */
+    ALLOCATED_BYTES("allocatedBytes"),
+    /** Lookups of the document's {@link LruResourceCache}, if it has one; per document only. */
+    RESOURCE_CACHE_HITS("resourceCacheHits"),
+    RESOURCE_CACHE_MISSES("resourceCacheMisses"),
+    RESOURCE_CACHE_EVICTIONS("resourceCacheEvictions");
+
+    private final String key;
+
+    Metric(String key) {
+      this.key = key;
+    }
+
+    /** @return the camel case name, e.g. {@code parseNanos} */
+    public String key() {
+      return key;
+    }
+  }
+
+  static final Metric[] METRICS = Metric.values();
+
+  // guarded by Metrics.class
+  private static MetricsSink defaultSink;
+
+  private final long[] values = new long[METRICS.length];
+
+  // allocation counter of the recording thread when the page started
+  long startAllocatedBytes;
+
+  /** @return the sink the strippers report to, {@link MetricsSink#NOOP} unless set */
+  public static synchronized MetricsSink getDefaultSink() {
+    if (defaultSink == null) {
+      defaultSink = fromSystemProperties();
+    }
+    return defaultSink;
+  }
+
+  public static synchronized void setDefaultSink(MetricsSink sink) {
+    defaultSink = sink;
+  }
+
+  private static MetricsSink fromSystemProperties() {
+    String metrics = System.getProperty("metrics");
+    if (metrics == null) {
+      return MetricsSink.NOOP;
+    }
+    switch (metrics) {
+      case "json":
+        return new JsonMetricsSink(new OutputStreamWriter(System.err));
+      case "histogram":
+        return new HistogramMetricsSink();
+      default:
+        throw new IllegalArgumentException("Unknown metrics sink: " + metrics);
+    }
+  }
+
+  public long get(Metric metric) {
+    return values[metric.ordinal()];
+  }
+
+  void add(Metric metric, long value) {
+    values[metric.ordinal()] += value;
+  }
+
+  void increment(Metric metric) {
+    values[metric.ordinal()]++;
+  }
+
+  void addAll(Metrics metrics) {
+    for (int i = 0; i < values.length; ++i) {
+      values[i] += metrics.values[i];
+    }
+  }
+
+  /** @return the bytes allocated by the current thread so far, 0 if unsupported */
+  static long allocatedBytes() {
+    com.sun.management.ThreadMXBean threads = Allocation.THREADS;
+    return threads == null ? 0 : threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder builder = new StringBuilder("Metrics{");
+    for (Metric metric : METRICS) {
+      if (metric.ordinal() > 0) {
+        builder.append(", ");
+      }
+      builder.append(metric.key()).append('=').append(get(metric));
+    }
+    return builder.append('}').toString();
+  }
+
+  // only looked up once allocation is measured, the management beans are slow to start
+  private static final class Allocation {
+    static final com.sun.management.ThreadMXBean THREADS = threadMXBean();
+
+    private static com.sun.management.ThreadMXBean threadMXBean() {
+      java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+      if (!(threads instanceof com.sun.management.ThreadMXBean)) {
+        return null;
+      }
+      com.sun.management.ThreadMXBean sunThreads = (com.sun.management.ThreadMXBean) threads;
+      if (!sunThreads.isThreadAllocatedMemorySupported()) {
+        return null;
+      }
+      if (!sunThreads.isThreadAllocatedMemoryEnabled()) {
+        sunThreads.setThreadAllocatedMemoryEnabled(true);
+      }
+      return sunThreads;
+    }
+  }
+}
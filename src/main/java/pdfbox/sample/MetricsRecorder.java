@@ -0,0 +1,82 @@
+package pdfbox.sample;
+
+import java.io.IOException;
+import org.apache.pdfbox.pdmodel.PDDocument;
+
+/**
+ * Measures one document for a {@link MetricsSink}. Wherever a recorder is passed around, null
+ * means metrics are off. Pages may be recorded on several threads, each page on one thread.
+ */
+final class MetricsRecorder {
+
+  private final MetricsSink sink;
+  private final String document;
+  private final Metrics totals = new Metrics();
+  private int pageCount;
+
+  private MetricsRecorder(MetricsSink sink, String document) {
+    this.sink = sink;
+    this.document = document;
+  }
+
+  /** @return a recorder for the default sink, null if that is disabled */
+  static MetricsRecorder create(String document) {
+    MetricsSink sink = Metrics.getDefaultSink();
+    return sink.isEnabled() ? new MetricsRecorder(sink, document) : null;
+  }
+
+  /** Opens {@code source}, adding its parse time to {@code metrics} unless that is null. */
+  static PDDocument open(MetricsRecorder metrics, DocumentSource source) throws IOException {
+    if (metrics == null) {
+      return source.open();
+    }
+    long allocated = Metrics.allocatedBytes();
+    long start = System.nanoTime();
+    PDDocument document = source.open();
+    metrics.add(Metrics.Metric.PARSE_NANOS, System.nanoTime() - start);
+    metrics.add(Metrics.Metric.ALLOCATED_BYTES, Metrics.allocatedBytes() - allocated);
+    return document;
+  }
+
+  /** @return the metrics of a page started on the current thread */
+  Metrics startPage() {
+    Metrics page = new Metrics();
+    page.startAllocatedBytes = Metrics.allocatedBytes();
+    return page;
+  }
+
+  /** Hands the page to the sink, on the thread that started it. */
+  void endPage(int pageIndex, Metrics page) {
+    page.add(Metrics.Metric.ALLOCATED_BYTES, Metrics.allocatedBytes() - page.startAllocatedBytes);
+    sink.page(document, pageIndex, page);
+    synchronized (this) {
+      totals.addAll(page);
+      pageCount++;
+    }
+  }
+
+  /** Adds to the document's totals only, e.g. the work of another thread on a page. */
+  synchronized void add(Metrics.Metric metric, long value) {
+    totals.add(metric, value);
+  }
+
+  /** Adds the hits, misses and evictions of {@code cache}, unless {@code metrics} is null. */
+  static void add(MetricsRecorder metrics, LruResourceCache cache) {
+    if (metrics != null) {
+      metrics.add(Metrics.Metric.RESOURCE_CACHE_HITS, cache.getHits());
+      metrics.add(Metrics.Metric.RESOURCE_CACHE_MISSES, cache.getMisses());
+      metrics.add(Metrics.Metric.RESOURCE_CACHE_EVICTIONS, cache.getEvictions());
+    }
+  }
+
+  /** Hands the document's totals to the sink, unless {@code metrics} is null. */
+  static void finish(MetricsRecorder metrics) {
+    if (metrics != null) {
+      metrics.finish();
+    }
+  }
+
+  private synchronized void finish() {
+    sink.document(document, pageCount, totals);
+  }
+}
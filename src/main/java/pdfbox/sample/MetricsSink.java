@@ -0,0 +1,33 @@
+package pdfbox.sample;
+
+/**
+ * Receives the metrics of each page as soon as it is done and the totals of each document at its
+ * end. Pages of one document may arrive from several threads when it is stripped in parallel.
+ */
+public interface MetricsSink {
+
+  /** Records nothing, and tells the strippers not to measure. */
+  MetricsSink NOOP =
+      new MetricsSink() {
+        @Override
+        public boolean isEnabled() {
+          return false;
+        }
+
+        @Override
+        public void page(String document, int pageIndex, Metrics metrics) {}
+
+        @Override
+        public void document(String document, int pageCount, Metrics metrics) {}
+      };
+
+  default boolean isEnabled() {
+    return true;
+  }
+
+  /** @param document the document's name, see {@link DocumentSource#getName()} */
+  void page(String document, int pageIndex, Metrics metrics);
+
+  /** @param pageCount the number of pages processed */
+  void document(String document, int pageCount, Metrics metrics);
+}
@@ -0,0 +1,45 @@
+package pdfbox.sample;
+
+import java.io.Writer;
+
+/**
+ * Discards everything, for strippers whose output is collected elsewhere: unlike an {@code
+ * OutputStreamWriter} over a {@code ByteArrayOutputStream} it neither encodes nor buffers the
+ * text, and one instance serves all threads.
+ */
+final class NullWriter extends Writer {
+
+  static final NullWriter INSTANCE = new NullWriter();
+
+  private NullWriter() {}
+
+  @Override
+  public void write(int c) {}
+
+  @Override
+  public void write(char[] cbuf, int off, int len) {}
+
+  @Override
+  public void write(String str, int off, int len) {}
+
+  @Override
+  public Writer append(CharSequence csq) {
+    return this;
+  }
+
+  @Override
+  public Writer append(CharSequence csq, int start, int end) {
+    return this;
+  }
+
+  @Override
+  public Writer append(char c) {
+    return this;
+  }
+
+  @Override
+  public void flush() {}
+
+  @Override
+  public void close() {}
+}
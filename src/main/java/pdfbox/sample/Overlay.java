@@ -0,0 +1,56 @@
+package pdfbox.sample;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Shape;
+import java.awt.Stroke;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The boxes drawn over a page, in points. They are recorded while the page's text is extracted,
+ * before anything is rendered, and painted onto each rendered tile of the page afterwards.
+ */
+final class Overlay {
+
+  // Color, Stroke or Shape, in drawing order
+  private final List<Object> operations = new ArrayList<>();
+  private Rectangle2D bounds;
+
+  void setColor(Color color) {
+    operations.add(color);
+  }
+
+  void setStroke(Stroke stroke) {
+    operations.add(stroke);
+  }
+
+  void draw(Shape shape) {
+    operations.add(shape);
+    Rectangle2D shapeBounds = shape.getBounds2D();
+    if (bounds == null) {
+      bounds = shapeBounds;
+    } else {
+      Rectangle2D.union(bounds, shapeBounds, bounds);
+    }
+  }
+
+  /** @return the union of the drawn shapes' bounds, null if nothing was drawn */
+  Rectangle2D getBounds() {
+    return bounds;
+  }
+
+  /** Replays the recorded operations, {@code graphics} must map points to the image's pixels. */
+  void paint(Graphics2D graphics) {
+    for (Object operation : operations) {
+      if (operation instanceof Color) {
+        graphics.setColor((Color) operation);
+      } else if (operation instanceof Stroke) {
+        graphics.setStroke((Stroke) operation);
+      } else {
+        graphics.draw((Shape) operation);
+      }
+    }
+  }
+}
@@ -0,0 +1,29 @@
+package pdfbox.sample;
+
+import java.util.List;
+
+/** The text runs of one page. */
+public final class PageResult {
+  /** 0 based index of the page in its document. */
+  public final int pageIndex;
+
+  public final List<TextRun> textRuns;
+
+  /** Spatial index of {@link #textRuns}, for region queries. */
+  public final TextRunIndex index;
+
+  public PageResult(int pageIndex, List<TextRun> textRuns) {
+    this(pageIndex, textRuns, TextRunIndex.of(textRuns));
+  }
+
+  public PageResult(int pageIndex, List<TextRun> textRuns, TextRunIndex index) {
+    this.pageIndex = pageIndex;
+    this.textRuns = textRuns;
+    this.index = index;
+  }
+
+  @Override
+  public String toString() {
+    return "PageResult{" + "pageIndex=" + pageIndex + ", textRuns=" + textRuns + '}';
+  }
+}
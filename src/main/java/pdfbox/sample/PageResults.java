@@ -0,0 +1,79 @@
+package pdfbox.sample;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import org.apache.pdfbox.pdmodel.PDDocument;
+
+/**
+ * The selected pages of an open document, each stripped only when the iteration reaches it, so
+ * that a caller who stops after the first page never pays for the rest.
+ *
+ * <p>Every iterator strips the pages anew with its own stripper. Errors while stripping are thrown
+ * from {@code next()} as {@link UncheckedIOException}. Closing closes the document.
+ */
+public final class PageResults implements Iterable<PageResult>, Closeable {
+
+  private final PDDocument document;
+  private final int[] pages;
+  private final MetricsRecorder metrics;
+
+  /** @param metrics finished when the results are closed, may be null */
+  PageResults(PDDocument document, PageSelection selection, MetricsRecorder metrics) {
+    this.document = document;
+    this.pages = selection.pages(document.getNumberOfPages());
+    this.metrics = metrics;
+  }
+
+  /** @return the number of selected pages */
+  public int size() {
+    return pages.length;
+  }
+
+  @Override
+  public Iterator<PageResult> iterator() {
+    List<List<TextRun>> stripped = new ArrayList<>(1);
+    TextRunStripper stripper;
+    try {
+      stripper = new TextRunStripper((page, textRuns) -> stripped.add(textRuns));
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    stripper.setSortByPosition(true);
+    stripper.setIndexed(true);
+    stripper.metrics = metrics;
+
+    return new Iterator<PageResult>() {
+      private int next;
+
+      @Override
+      public boolean hasNext() {
+        return next < pages.length;
+      }
+
+      @Override
+      public PageResult next() {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+        int page = pages[next++];
+        try {
+          stripper.stripPage(document, page);
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+        return new PageResult(page, stripped.remove(0), stripper.getTextRunIndex());
+      }
+    };
+  }
+
+  @Override
+  public void close() throws IOException {
+    MetricsRecorder.finish(metrics);
+    document.close();
+  }
+}
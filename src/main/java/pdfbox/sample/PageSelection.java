@@ -0,0 +1,136 @@
+package pdfbox.sample;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.IntPredicate;
+import java.util.stream.IntStream;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageTree;
+
+/**
+ * The pages of a document to process, by 0 based page index: a range or a predicate.
+ *
+ * <p>Selection only looks at page indexes, so the pages that aren't selected are never loaded, let
+ * alone have their content streams parsed.
+ */
+public final class PageSelection {
+
+  public static final PageSelection ALL = new PageSelection(0, Integer.MAX_VALUE, null);
+
+  private final int from;
+  private final int to;
+  private final IntPredicate predicate;
+
+  private PageSelection(int from, int to, IntPredicate predicate) {
+    this.from = from;
+    this.to = to;
+    this.predicate = predicate;
+  }
+
+  /** Pages {@code from} inclusive to {@code to} exclusive, as far as the document has them. */
+  public static PageSelection range(int from, int to) {
+    if (from < 0 || to < from) {
+      throw new IllegalArgumentException("Invalid page range " + from + " to " + to);
+    }
+    return new PageSelection(from, to, null);
+  }
+
+  public static PageSelection first(int count) {
+    return range(0, count);
+  }
+
+  /** Pages whose index {@code predicate} accepts, tested in ascending order. */
+  public static PageSelection matching(IntPredicate predicate) {
+    return new PageSelection(0, Integer.MAX_VALUE, predicate);
+  }
+
+  /** @return the selected page indexes of a document with {@code pageCount} pages, ascending */
+  public int[] pages(int pageCount) {
+    IntStream pages = IntStream.range(Math.min(from, pageCount), Math.min(to, pageCount));
+    return predicate == null ? pages.toArray() : pages.filter(predicate).toArray();
+  }
+
+  /** @return whether the page with the 0 based index {@code pageIndex} is selected */
+  public boolean contains(int pageIndex) {
+    return pageIndex >= from
+        && pageIndex < to
+        && (predicate == null || predicate.test(pageIndex));
+  }
+
+  /**
+   * The selected pages as a page tree for {@code PDFTextStripper.processPages}, which otherwise
+   * visits every page of the document even when its start and end page exclude most of them.
+   * Stripped through it, the selected pages are numbered from 1.
+   */
+  PDPageTree pageTree(PDDocument document) {
+    return pageTree(document, pages(document.getNumberOfPages()));
+  }
+
+  /** The page tree of the given pages, see {@link #pageTree(PDDocument)}. */
+  static PDPageTree pageTree(PDDocument document, int[] pages) {
+    return new SelectedPageTree(document, pages);
+  }
+
+  /** The page tree of one page, see {@link #pageTree(PDDocument)}. */
+  static PDPageTree pageTree(PDDocument document, int page) {
+    return new SelectedPageTree(document, new int[] {page});
+  }
+
+  @Override
+  public String toString() {
+    if (predicate != null) {
+      return "PageSelection{matching " + predicate + '}';
+    }
+    return "PageSelection{" + from + ".." + (to == Integer.MAX_VALUE ? "" : to) + '}';
+  }
+
+  // loads each selected page when the iteration reaches it, by descending from the root
+  private static final class SelectedPageTree extends PDPageTree {
+    private final PDDocument document;
+    private final int[] pages;
+
+    SelectedPageTree(PDDocument document, int[] pages) {
+      this.document = document;
+      this.pages = pages;
+    }
+
+    @Override
+    public Iterator<PDPage> iterator() {
+      return new Iterator<PDPage>() {
+        private int next;
+
+        @Override
+        public boolean hasNext() {
+          return next < pages.length;
+        }
+
+        @Override
+        public PDPage next() {
+          if (!hasNext()) {
+            throw new NoSuchElementException();
+          }
+          return document.getPage(pages[next++]);
+        }
+      };
+    }
+
+    @Override
+    public PDPage get(int index) {
+      return document.getPage(pages[index]);
+    }
+
+    @Override
+    public int getCount() {
+      return pages.length;
+    }
+
+    /** @return the page's position in the selection, -1 if it isn't selected */
+    @Override
+    public int indexOf(PDPage page) {
+      int index = document.getPages().indexOf(page);
+      return index < 0 ? -1 : Math.max(-1, Arrays.binarySearch(pages, index));
+    }
+  }
+}
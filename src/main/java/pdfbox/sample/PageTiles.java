@@ -0,0 +1,146 @@
+package pdfbox.sample;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.rendering.ImageType;
+import org.apache.pdfbox.rendering.PDFRenderer;
+
+/** Splits the area of a page to render into tiles, and renders a tile with its overlay. */
+final class PageTiles {
+
+  // keeps the strokes at the edge of the text inside a text clip
+  private static final double TEXT_CLIP_MARGIN = 1;
+
+  /** A rectangle of the rendered page, in pixels. */
+  static final class Tile {
+    final Rectangle bounds;
+    final int row;
+    final int column;
+    final boolean single;
+    final boolean wholePage;
+
+    Tile(Rectangle bounds, int row, int column, boolean single, boolean wholePage) {
+      this.bounds = bounds;
+      this.row = row;
+      this.column = column;
+      this.single = single;
+      this.wholePage = wholePage;
+    }
+
+    /** @return "" for the only tile of a page, else "-row-column" counting from 1 */
+    String suffix() {
+      return single ? "" : "-" + (row + 1) + "-" + (column + 1);
+    }
+  }
+
+  private PageTiles() {}
+
+  /** @return the tiles to render, none if the region to render is empty */
+  static List<Tile> tiles(PDPage page, RenderOptions options, Overlay overlay) {
+    // the image size of PDFRenderer.renderImage
+    float scale = options.getScale();
+    PDRectangle cropBox = page.getCropBox();
+    int width = (int) Math.max(Math.floor(cropBox.getWidth() * scale), 1);
+    int height = (int) Math.max(Math.floor(cropBox.getHeight() * scale), 1);
+    int rotation = page.getRotation();
+    if (rotation == 90 || rotation == 270) {
+      int swap = width;
+      width = height;
+      height = swap;
+    }
+    Rectangle area = new Rectangle(0, 0, width, height);
+
+    Rectangle2D region = options.getClip();
+    if (options.isClipToText()) {
+      Rectangle2D text = overlay.getBounds();
+      if (text == null) {
+        return Collections.emptyList();
+      }
+      text =
+          new Rectangle2D.Double(
+              text.getX() - TEXT_CLIP_MARGIN,
+              text.getY() - TEXT_CLIP_MARGIN,
+              text.getWidth() + 2 * TEXT_CLIP_MARGIN,
+              text.getHeight() + 2 * TEXT_CLIP_MARGIN);
+      region = region == null ? text : region.createIntersection(text);
+    }
+    if (region != null) {
+      int x0 = (int) Math.floor(region.getMinX() * scale);
+      int y0 = (int) Math.floor(region.getMinY() * scale);
+      int x1 = (int) Math.ceil(region.getMaxX() * scale);
+      int y1 = (int) Math.ceil(region.getMaxY() * scale);
+      area = area.intersection(new Rectangle(x0, y0, x1 - x0, y1 - y0));
+      if (area.isEmpty()) {
+        return Collections.emptyList();
+      }
+    }
+
+    int size = options.getMaxTileSize();
+    int rows = (area.height + size - 1) / size;
+    int columns = (area.width + size - 1) / size;
+    boolean single = rows == 1 && columns == 1;
+    List<Tile> tiles = new ArrayList<>(rows * columns);
+    for (int row = 0; row < rows; ++row) {
+      for (int column = 0; column < columns; ++column) {
+        int x = area.x + column * size;
+        int y = area.y + row * size;
+        int tileWidth = Math.min(size, area.x + area.width - x);
+        int tileHeight = Math.min(size, area.y + area.height - y);
+        Rectangle bounds = new Rectangle(x, y, tileWidth, tileHeight);
+        tiles.add(new Tile(bounds, row, column, single, single && region == null));
+      }
+    }
+    return tiles;
+  }
+
+  /** Renders {@code tile} of {@code page} and paints the overlay onto it. */
+  static BufferedImage render(
+      PDFRenderer renderer, int page, Tile tile, RenderOptions options, Overlay overlay)
+      throws IOException {
+    float scale = options.getScale();
+    Rectangle bounds = tile.bounds;
+
+    BufferedImage image;
+    if (tile.wholePage) {
+      image = renderer.renderImage(page, scale, options.getImageType());
+    } else {
+      image = new BufferedImage(bounds.width, bounds.height, bufferedImageType(options));
+      Graphics2D graphics = image.createGraphics();
+      graphics.setBackground(
+          options.getImageType() == ImageType.ARGB ? new Color(0, 0, 0, 0) : Color.WHITE);
+      graphics.clearRect(0, 0, bounds.width, bounds.height);
+      graphics.translate(-bounds.x, -bounds.y);
+      renderer.renderPageToGraphics(page, graphics, scale);
+      graphics.dispose();
+    }
+
+    Graphics2D g2d = image.createGraphics();
+    g2d.translate(-bounds.x, -bounds.y);
+    g2d.scale(scale, scale);
+    overlay.paint(g2d);
+    g2d.dispose();
+    return image;
+  }
+
+  private static int bufferedImageType(RenderOptions options) {
+    switch (options.getImageType()) {
+      case BINARY:
+        return BufferedImage.TYPE_BYTE_BINARY;
+      case GRAY:
+        return BufferedImage.TYPE_BYTE_GRAY;
+      case ARGB:
+        return BufferedImage.TYPE_INT_ARGB;
+      default:
+        return BufferedImage.TYPE_INT_RGB;
+    }
+  }
+}
@@ -0,0 +1,26 @@
+package pdfbox.sample;
+
+import java.io.IOException;
+import org.apache.pdfbox.pdmodel.PDPageTree;
+import org.apache.pdfbox.text.PDFTextStripper;
+
+/**
+ * A {@link PDFTextStripper} that strips the pages of a page tree set with {@link #setPageTree},
+ * e.g. the selected pages of {@link PageSelection#pageTree}, instead of the whole document.
+ */
+class PageTreeStripper extends PDFTextStripper {
+
+  private PDPageTree pageTree;
+
+  PageTreeStripper() throws IOException {}
+
+  /** @param pageTree the pages {@code writeText} strips, null for all pages of the document */
+  void setPageTree(PDPageTree pageTree) {
+    this.pageTree = pageTree;
+  }
+
+  @Override
+  protected void processPages(PDPageTree pages) throws IOException {
+    super.processPages(pageTree != null ? pageTree : pages);
+  }
+}
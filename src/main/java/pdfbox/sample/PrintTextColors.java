@@ -1,9 +1,7 @@
 package pdfbox.sample;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.OutputStreamWriter;
-import java.io.Writer;
+import java.nio.file.Path;
 import java.util.List;
 import org.apache.pdfbox.contentstream.operator.color.SetNonStrokingColor;
 import org.apache.pdfbox.contentstream.operator.color.SetNonStrokingColorN;
@@ -17,14 +15,16 @@ import org.apache.pdfbox.contentstream.operator.color.SetStrokingColorSpace;
 import org.apache.pdfbox.contentstream.operator.color.SetStrokingDeviceCMYKColor;
 import org.apache.pdfbox.contentstream.operator.color.SetStrokingDeviceGrayColor;
 import org.apache.pdfbox.contentstream.operator.color.SetStrokingDeviceRGBColor;
+import org.apache.pdfbox.io.MemoryUsageSetting;
 import org.apache.pdfbox.pdmodel.PDDocument;
-import org.apache.pdfbox.pdmodel.graphics.color.PDColor;
 import org.apache.pdfbox.pdmodel.graphics.state.PDGraphicsState;
-import org.apache.pdfbox.pdmodel.graphics.state.RenderingMode;
-import org.apache.pdfbox.text.PDFTextStripper;
 import org.apache.pdfbox.text.TextPosition;
 
-public class PrintTextColors extends PDFTextStripper {
+public class PrintTextColors extends PageTreeStripper {
+  private final DiagnosticsSink diagnostics = Diagnostics.getDefaultSink();
+  private String documentName = "-";
+  private int[] pages;
+
   public PrintTextColors() throws IOException {
     addOperator(new SetStrokingColorSpace());
     addOperator(new SetNonStrokingColorSpace());
@@ -41,52 +41,51 @@ public class PrintTextColors extends PDFTextStripper {
   }
 
   public static void processPdf(byte[] input) throws IOException {
-    try (PDDocument document = PDDocument.load(input)) {
-      PDFTextStripper stripper = new PrintTextColors();
+    processPdf(DocumentSource.of(input), PageSelection.ALL);
+  }
+
+  public static void processPdf(Path file, MemoryUsageSetting memUsageSetting)
+      throws IOException {
+    processPdf(file, memUsageSetting, PageSelection.ALL);
+  }
+
+  public static void processPdf(
+      Path file, MemoryUsageSetting memUsageSetting, PageSelection selection)
+      throws IOException {
+    processPdf(DocumentSource.of(file, memUsageSetting), selection);
+  }
+
+  private static void processPdf(DocumentSource source, PageSelection selection)
+      throws IOException {
+    try (PDDocument document = source.open()) {
+      PrintTextColors stripper = new PrintTextColors();
       stripper.setSortByPosition(true);
-      stripper.setStartPage(0);
-      stripper.setEndPage(document.getNumberOfPages());
+      stripper.documentName = source.getName();
+      stripper.pages = selection.pages(document.getNumberOfPages());
+      stripper.setPageTree(PageSelection.pageTree(document, stripper.pages));
 
-      Writer dummy = new OutputStreamWriter(new ByteArrayOutputStream());
-      stripper.writeText(document, dummy);
+      try {
+        stripper.writeText(document, NullWriter.INSTANCE);
+      } finally {
+        stripper.diagnostics.flush();
+      }
     }
   }
 
   @Override
   protected void writeString(String string, List<TextPosition> textPositions) throws IOException {
     super.writeString(string, textPositions);
-    System.out.println(string);
-    printTextPosition(textPositions.get(0));
-  }
-
-  private void printTextPosition(TextPosition text) {
-
-    PDGraphicsState graphicsState = getGraphicsState();
-    PDColor strokingColor = graphicsState.getStrokingColor();
-    PDColor nonStrokingColor = graphicsState.getNonStrokingColor();
-    RenderingMode renderingMode = graphicsState.getTextState().getRenderingMode();
-    String unicode = text.getUnicode();
-
-    System.out.println("1st char Unicode:            " + unicode);
-    System.out.println("Rendering mode:     " + renderingMode);
-    System.out.println("Stroking color:     " + strokingColor);
-    System.out.println("Non-Stroking color: " + nonStrokingColor);
-    System.out.println(
-        "String["
-            + text.getXDirAdj()
-            + ","
-            + text.getYDirAdj()
-            + " fs="
-            + text.getFontSize()
-            + " xscale="
-            + text.getXScale()
-            + " height="
-            + text.getHeightDir()
-            + " space="
-            + text.getWidthOfSpace()
-            + " width="
-            + text.getWidthDirAdj()
-            + "]");
-    System.out.println();
+    int pageIndex = pages[getCurrentPageNo() - 1];
+    if (diagnostics.sample(pageIndex)) {
+      PDGraphicsState graphicsState = getGraphicsState();
+      diagnostics.glyph(
+          documentName,
+          pageIndex,
+          string,
+          textPositions.get(0),
+          graphicsState.getTextState().getRenderingMode(),
+          graphicsState.getStrokingColor(),
+          graphicsState.getNonStrokingColor());
+    }
   }
 }
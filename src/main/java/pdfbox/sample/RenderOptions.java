@@ -0,0 +1,95 @@
+package pdfbox.sample;
+
+import java.awt.geom.Rectangle2D;
+import org.apache.pdfbox.rendering.ImageType;
+
+/**
+ * How the draw examples render their pages.
+ *
+ * <p>By default the whole page is rendered as RGB at 288 dpi, four times its size in points. A clip
+ * rectangle, or the bounds of the page's text, restricts rendering to part of the page. A rendered
+ * area wider or taller than {@code maxTileSize} pixels is rendered and written in tiles, so no
+ * image exceeds {@code maxTileSize} pixels on either side whatever the page size. A page selection
+ * restricts rendering to some pages.
+ */
+public final class RenderOptions {
+
+  public static final float DEFAULT_DPI = 288;
+  public static final int DEFAULT_MAX_TILE_SIZE = 4096;
+
+  private float dpi = DEFAULT_DPI;
+  private ImageType imageType = ImageType.RGB;
+  private Rectangle2D clip;
+  private boolean clipToText;
+  private int maxTileSize = DEFAULT_MAX_TILE_SIZE;
+  private PageSelection pages = PageSelection.ALL;
+
+  public float getDpi() {
+    return dpi;
+  }
+
+  public RenderOptions setDpi(float dpi) {
+    this.dpi = dpi;
+    return this;
+  }
+
+  /** @return image pixels per point */
+  public float getScale() {
+    return dpi / 72;
+  }
+
+  public ImageType getImageType() {
+    return imageType;
+  }
+
+  /** {@link ImageType#GRAY} and {@link ImageType#BINARY} need a quarter and 1/32 of the memory. */
+  public RenderOptions setImageType(ImageType imageType) {
+    this.imageType = imageType;
+    return this;
+  }
+
+  public Rectangle2D getClip() {
+    return clip;
+  }
+
+  /**
+   * @param clip the part of every page to render, in points from the top left corner of the
+   *     displayed page, the space of the {@link TextRun} boxes; null renders the whole page
+   */
+  public RenderOptions setClip(Rectangle2D clip) {
+    this.clip = clip;
+    return this;
+  }
+
+  public boolean isClipToText() {
+    return clipToText;
+  }
+
+  /**
+   * @param clipToText render only the union of the boxes drawn over the page, within the clip if
+   *     there is one; pages without text are skipped
+   */
+  public RenderOptions setClipToText(boolean clipToText) {
+    this.clipToText = clipToText;
+    return this;
+  }
+
+  public int getMaxTileSize() {
+    return maxTileSize;
+  }
+
+  public RenderOptions setMaxTileSize(int maxTileSize) {
+    this.maxTileSize = maxTileSize;
+    return this;
+  }
+
+  public PageSelection getPages() {
+    return pages;
+  }
+
+  /** @param pages the pages to render, the others are neither stripped nor rendered */
+  public RenderOptions setPages(PageSelection pages) {
+    this.pages = pages;
+    return this;
+  }
+}
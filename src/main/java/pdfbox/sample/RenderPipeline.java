@@ -0,0 +1,210 @@
+package pdfbox.sample;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.imageio.ImageIO;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.ResourceCache;
+import org.apache.pdfbox.rendering.PDFRenderer;
+
+/**
+ * Records the overlay of each page in page order on the calling thread, renders the page's tiles
+ * and paints the overlay onto them on several threads, and writes the PNGs on another pool.
+ *
+ * <p>The overlay is recorded first so that the area to render can depend on the page's text. Each
+ * render thread has its own document and renderer, which it keeps for all its tiles. At most
+ * {@code renderThreads + queueCapacity} tiles are queued, rendered or being written at any time:
+ * the calling thread waits for one to be written before it hands out another.
+ */
+final class RenderPipeline {
+
+  /** Records the overlay of a page, called on one thread in page order. */
+  @FunctionalInterface
+  interface OverlayRecorder {
+    Overlay record(int page) throws IOException;
+  }
+
+  /** Names the PNG of a tile. */
+  @FunctionalInterface
+  interface ImageFile {
+    File get(int page, PageTiles.Tile tile);
+  }
+
+  private final DocumentSource source;
+  private final ResourceCache resourceCache;
+  private final RenderOptions options;
+  private final int renderThreads;
+  private final int encodeThreads;
+  private final int queueCapacity;
+  private final MetricsRecorder metrics;
+
+  /**
+   * @param resourceCache installed on every render thread's document, null keeps the default
+   * @param metrics gets the parse, render and encode times of the threads as document totals, may
+   *     be null
+   */
+  RenderPipeline(
+      DocumentSource source,
+      ResourceCache resourceCache,
+      RenderOptions options,
+      int renderThreads,
+      int encodeThreads,
+      int queueCapacity,
+      MetricsRecorder metrics) {
+    this.source = source;
+    this.resourceCache = resourceCache;
+    this.options = options;
+    this.renderThreads = renderThreads;
+    this.encodeThreads = encodeThreads;
+    this.queueCapacity = queueCapacity;
+    this.metrics = metrics;
+  }
+
+  /** @param document the document the overlays are recorded from */
+  void run(PDDocument document, OverlayRecorder recorder, ImageFile imageFile)
+      throws IOException {
+    Semaphore tiles = new Semaphore(renderThreads + queueCapacity);
+    AtomicReference<Throwable> failure = new AtomicReference<>();
+    List<PDDocument> documents = Collections.synchronizedList(new ArrayList<>());
+    ThreadLocal<PDFRenderer> renderers = ThreadLocal.withInitial(() -> open(documents));
+
+    ExecutorService renderPool = Executors.newFixedThreadPool(renderThreads, daemon("render"));
+    ExecutorService encodePool = Executors.newFixedThreadPool(encodeThreads, daemon("png"));
+    List<CompletableFuture<Void>> writes = new ArrayList<>();
+    try {
+      for (int page : options.getPages().pages(document.getNumberOfPages())) {
+        Overlay overlay = recorder.record(page);
+        for (PageTiles.Tile tile : PageTiles.tiles(document.getPage(page), options, overlay)) {
+          acquire(tiles);
+          if (failure.get() != null) {
+            throw rethrow(failure.get());
+          }
+
+          int pageIndex = page;
+          File file = imageFile.get(page, tile);
+          writes.add(
+              CompletableFuture.supplyAsync(
+                      () -> render(renderers.get(), pageIndex, tile, overlay), renderPool)
+                  .thenAcceptAsync(image -> write(image, file), encodePool)
+                  .whenComplete(
+                      (result, error) -> {
+                        if (error != null) {
+                          failure.compareAndSet(null, error);
+                        }
+                        tiles.release();
+                      }));
+        }
+      }
+
+      try {
+        CompletableFuture.allOf(writes.toArray(new CompletableFuture<?>[0])).join();
+      } catch (CompletionException e) {
+        throw rethrow(e);
+      }
+    } finally {
+      renderPool.shutdownNow();
+      encodePool.shutdownNow();
+      awaitTermination(renderPool);
+      for (PDDocument renderDocument : documents) {
+        renderDocument.close();
+      }
+    }
+  }
+
+  private PDFRenderer open(List<PDDocument> documents) {
+    try {
+      PDDocument document = MetricsRecorder.open(metrics, source);
+      documents.add(document);
+      if (resourceCache != null) {
+        document.setResourceCache(resourceCache);
+      }
+      return new PDFRenderer(document);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private BufferedImage render(
+      PDFRenderer renderer, int page, PageTiles.Tile tile, Overlay overlay) {
+    long start = metrics != null ? System.nanoTime() : 0;
+    try {
+      return PageTiles.render(renderer, page, tile, options, overlay);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    } finally {
+      if (metrics != null) {
+        metrics.add(Metrics.Metric.RENDER_NANOS, System.nanoTime() - start);
+      }
+    }
+  }
+
+  private void write(BufferedImage image, File file) {
+    long start = metrics != null ? System.nanoTime() : 0;
+    try {
+      ImageIO.write(image, "png", file);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    } finally {
+      if (metrics != null) {
+        metrics.add(Metrics.Metric.ENCODE_NANOS, System.nanoTime() - start);
+      }
+    }
+  }
+
+  private static void acquire(Semaphore tiles) throws InterruptedIOException {
+    try {
+      tiles.acquire();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("interrupted while waiting for a render slot");
+    }
+  }
+
+  // render threads don't check for interruption, let them finish before closing their documents
+  private static void awaitTermination(ExecutorService pool) throws InterruptedIOException {
+    try {
+      pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("interrupted while stopping the render threads");
+    }
+  }
+
+  private static IOException rethrow(Throwable error) throws IOException {
+    while (error instanceof CompletionException && error.getCause() != null) {
+      error = error.getCause();
+    }
+    if (error instanceof UncheckedIOException) {
+      throw ((UncheckedIOException) error).getCause();
+    }
+    if (error instanceof RuntimeException) {
+      throw (RuntimeException) error;
+    }
+    if (error instanceof Error) {
+      throw (Error) error;
+    }
+    throw new IOException(error);
+  }
+
+  private static ThreadFactory daemon(String name) {
+    return r -> {
+      Thread thread = new Thread(r, name);
+      thread.setDaemon(true);
+      return thread;
+    };
+  }
+}
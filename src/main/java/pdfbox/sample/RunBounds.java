@@ -0,0 +1,152 @@
+package pdfbox.sample;
+
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Rectangle2D;
+import java.io.IOException;
+import org.apache.pdfbox.text.TextPosition;
+import org.apache.pdfbox.util.Matrix;
+
+/**
+ * Glyph boxes and their union, computed into primitive fields instead of through transformed
+ * Shapes and {@link Rectangle2D#createUnion} chains.
+ *
+ * <p>The glyph, flip and rotation transforms are applied one after the other to the same corner
+ * points, and the union uses the same min/max steps as {@link Rectangle2D#union}, so the result is
+ * bit for bit the box the Shape based code computed.
+ */
+final class RunBounds {
+
+  private final AffineTransform glyphAT = new AffineTransform();
+  private final double[] corners = new double[8];
+  private final double[] outline = new double[4];
+
+  // page transforms, rotateAT is null when the page isn't rotated
+  private AffineTransform flipAT;
+  private AffineTransform rotateAT;
+
+  // union of the glyph boxes added since reset()
+  private double x;
+  private double y;
+  private double width;
+  private double height;
+  private int count;
+
+  void setPage(AffineTransform flipAT, AffineTransform rotateAT) {
+    this.flipAT = flipAT;
+    this.rotateAT = rotateAT.isIdentity() ? null : rotateAT;
+  }
+
+  void reset() {
+    count = 0;
+  }
+
+  int count() {
+    return count;
+  }
+
+  /** Adds the box spanned by the glyph's advance width and its font's bbox height. */
+  void add(TextPosition text, GlyphMetricsCache.FontMetrics metrics, float xadvance) {
+    setTextMatrix(text);
+    glyphAT.concatenate(metrics.glyphToText);
+    add(0, metrics.bboxLowerLeftY, xadvance, metrics.bboxHeight);
+  }
+
+  /**
+   * Adds the bounds of the glyph's outline, if it has one.
+   *
+   * @return false if the glyph has no outline
+   */
+  boolean addOutline(TextPosition text, GlyphBoundsCache.FontBounds fontBounds, int code)
+      throws IOException {
+    if (!fontBounds.bounds(code, outline)) {
+      return false;
+    }
+    setTextMatrix(text);
+    fontBounds.concatenate(glyphAT);
+    add(outline[0], outline[1], outline[2], outline[3]);
+    return true;
+  }
+
+  private void setTextMatrix(TextPosition text) {
+    Matrix m = text.getTextMatrix();
+    glyphAT.setTransform(
+        m.getValue(0, 0),
+        m.getValue(0, 1),
+        m.getValue(1, 0),
+        m.getValue(1, 1),
+        m.getValue(2, 0),
+        m.getValue(2, 1));
+  }
+
+  // adds a rectangle in the space glyphAT maps from
+  private void add(double x0, double y0, double w, double h) {
+    double gx = 0;
+    double gy = 0;
+    double gw = 0;
+    double gh = 0;
+    // a rectangle with negative size has an empty outline, whose bounds are all zero
+    if (!(w < 0 || h < 0)) {
+      corners[0] = x0;
+      corners[1] = y0;
+      corners[2] = x0 + w;
+      corners[3] = y0;
+      corners[4] = x0 + w;
+      corners[5] = y0 + h;
+      corners[6] = x0;
+      corners[7] = y0 + h;
+      glyphAT.transform(corners, 0, corners, 0, 4);
+      flipAT.transform(corners, 0, corners, 0, 4);
+      if (rotateAT != null) {
+        rotateAT.transform(corners, 0, corners, 0, 4);
+      }
+
+      double x1 = corners[0];
+      double y1 = corners[1];
+      double x2 = x1;
+      double y2 = y1;
+      for (int i = 6; i > 0; i -= 2) {
+        double cx = corners[i];
+        double cy = corners[i + 1];
+        if (cx < x1) x1 = cx;
+        if (cy < y1) y1 = cy;
+        if (cx > x2) x2 = cx;
+        if (cy > y2) y2 = cy;
+      }
+      gx = x1;
+      gy = y1;
+      gw = x2 - x1;
+      gh = y2 - y1;
+    }
+
+    if (count++ == 0) {
+      x = gx;
+      y = gy;
+      width = gw;
+      height = gh;
+      return;
+    }
+
+    double x1 = Math.min(x, gx);
+    double y1 = Math.min(y, gy);
+    double x2 = Math.max(x + width, gx + gw);
+    double y2 = Math.max(y + height, gy + gh);
+    if (x2 < x1) {
+      double t = x1;
+      x1 = x2;
+      x2 = t;
+    }
+    if (y2 < y1) {
+      double t = y1;
+      y1 = y2;
+      y2 = t;
+    }
+    x = x1;
+    y = y1;
+    width = x2 - x1;
+    height = y2 - y1;
+  }
+
+  Rectangle2D toRectangle() {
+    return new Rectangle2D.Double(x, y, width, height);
+  }
+}
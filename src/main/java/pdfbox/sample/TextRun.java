@@ -1,7 +1,6 @@
 package pdfbox.sample;
 
 import java.awt.geom.Rectangle2D;
-import org.apache.pdfbox.pdmodel.font.PDFont;
 import org.apache.pdfbox.pdmodel.graphics.state.RenderingMode;
 
 public class TextRun {
@@ -11,7 +10,12 @@ public class TextRun {
   public final int nonStrokingColor;
   public final RenderingMode renderingMode;
   public final float fontSize;
-  public final PDFont font;
+
+  /** The run's font, interned. */
+  public final FontDescriptor font;
+
+  /** The font's id in the {@link FontTable} of the run's document. */
+  public final int fontId;
 
   public TextRun(
       String text,
@@ -20,7 +24,8 @@ public class TextRun {
       int nonStrokingColor,
       RenderingMode renderingMode,
       float fontSize,
-      PDFont font) {
+      FontDescriptor font,
+      int fontId) {
     this.text = text;
     this.box = box;
     this.strokingColor = strokingColor;
@@ -28,6 +33,7 @@ public class TextRun {
     this.renderingMode = renderingMode;
     this.fontSize = fontSize;
     this.font = font;
+    this.fontId = fontId;
   }
 
   @Override
@@ -48,6 +54,8 @@ public class TextRun {
         + fontSize
         + ", font="
         + font
+        + ", fontId="
+        + fontId
         + '}';
   }
 }
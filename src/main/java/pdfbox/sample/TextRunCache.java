@@ -0,0 +1,497 @@
+package pdfbox.sample;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.apache.pdfbox.cos.COSArray;
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSBoolean;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSFloat;
+import org.apache.pdfbox.cos.COSInteger;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSObject;
+import org.apache.pdfbox.cos.COSStream;
+import org.apache.pdfbox.cos.COSString;
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDResources;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.interactive.pagenavigation.PDThreadBead;
+
+/**
+ * An on disk cache of extracted text runs, in the format of {@link TextRunEncoder}, so that
+ * documents and pages seen before are not interpreted again.
+ *
+ * <p>Entries are keyed by content hashes: a whole document by the SHA-256 of its bytes, a page by
+ * the SHA-256 of its content streams, its resources and its geometry. A document that was
+ * extracted before is not even opened. Of a changed document, or a new one built from the same
+ * page templates, only the pages whose hash is unknown are stripped.
+ *
+ * <p>The least recently used entries are deleted once the files exceed {@code maxBytes}; recency
+ * is kept in the files' modification times, so it survives a restart.
+ *
+ * <p>Boxes are cached in single precision. The runs of freshly stripped pages are read back from
+ * their entries too, so every box the cache returns is single precision, whether its page hit or
+ * missed. One cache may be shared by several threads.
+ */
+public final class TextRunCache {
+
+  public static final long DEFAULT_MAX_BYTES = 1024L * 1024 * 1024;
+
+  // part of every key, bump when the extraction changes its output
+  private static final int KEY_VERSION = 2;
+  private static final String SUFFIX = ".runs";
+
+  private static final byte DOCUMENT = 'D';
+  private static final byte PAGE = 'P';
+
+  private final Path directory;
+  private final long maxBytes;
+  private final boolean preciseGlyphBounds = Boolean.getBoolean("preciseGlyphBounds");
+
+  // file name to size, least recently used first
+  private final Map<String, Long> entries = new LinkedHashMap<>(64, 0.75f, true);
+  private long bytes;
+  private long documentHits;
+  private long documentMisses;
+  private long pageHits;
+  private long pageMisses;
+  private long evictions;
+
+  /** Takes over the entries already in {@code directory}, creating it if need be. */
+  public TextRunCache(Path directory, long maxBytes) throws IOException {
+    this.directory = Files.createDirectories(directory);
+    this.maxBytes = maxBytes;
+
+    List<Path> files;
+    try (Stream<Path> list = Files.list(directory)) {
+      files =
+          list.filter(file -> file.getFileName().toString().endsWith(SUFFIX))
+              .collect(Collectors.toList());
+    }
+    Map<Path, FileTime> modified = new HashMap<>();
+    for (Path file : files) {
+      modified.put(file, Files.getLastModifiedTime(file));
+    }
+    files.sort(Comparator.comparing(modified::get));
+    for (Path file : files) {
+      long size = Files.size(file);
+      entries.put(file.getFileName().toString(), size);
+      bytes += size;
+    }
+    delete(evict());
+  }
+
+  public List<List<TextRun>> processPdf(byte[] input) throws IOException {
+    MessageDigest digest = newDigest(DOCUMENT);
+    digest.update(input);
+    return processPdf(digest, DocumentSource.of(input));
+  }
+
+  public List<List<TextRun>> processPdf(Path file, MemoryUsageSetting memUsageSetting)
+      throws IOException {
+    MessageDigest digest = newDigest(DOCUMENT);
+    byte[] buffer = new byte[64 * 1024];
+    try (InputStream in = Files.newInputStream(file)) {
+      for (int n = in.read(buffer); n != -1; n = in.read(buffer)) {
+        digest.update(buffer, 0, n);
+      }
+    }
+    return processPdf(digest, DocumentSource.of(file, memUsageSetting));
+  }
+
+  private List<List<TextRun>> processPdf(MessageDigest documentDigest, DocumentSource source)
+      throws IOException {
+    String documentKey = fileName(documentDigest.digest());
+    ByteBuffer cached = get(documentKey);
+    if (cached != null) {
+      List<List<TextRun>> pagedTextRuns = decode(cached, new FontTable());
+      if (pagedTextRuns != null) {
+        count(true, true);
+        return pagedTextRuns;
+      }
+      remove(documentKey);
+    }
+    count(true, false);
+
+    try (PDDocument document = source.open()) {
+      int pageCount = document.getNumberOfPages();
+      FontTable fontTable = new FontTable();
+      List<List<TextRun>> pagedTextRuns = new ArrayList<>(pageCount);
+      List<List<TextRun>> stripped = new ArrayList<>(1);
+      TextRunStripper stripper = null;
+      PageHasher hasher = new PageHasher();
+      for (int pageNum = 0; pageNum < pageCount; ++pageNum) {
+        PDPage page = document.getPage(pageNum);
+        String pageKey = fileName(hasher.hash(page));
+        List<TextRun> textRuns = null;
+        cached = get(pageKey);
+        if (cached != null) {
+          List<List<TextRun>> decoded = decode(cached, fontTable);
+          if (decoded != null && decoded.size() == 1) {
+            textRuns = decoded.get(0);
+          } else {
+            remove(pageKey);
+          }
+        }
+        count(false, textRuns != null);
+
+        if (textRuns == null) {
+          if (stripper == null) {
+            stripper = new TextRunStripper((pageIndex, runs) -> stripped.add(runs));
+            stripper.setSortByPosition(true);
+            stripper.setPreciseGlyphBounds(preciseGlyphBounds);
+            stripper.setFontTable(fontTable);
+          }
+          stripper.stripPage(document, pageNum);
+          byte[] encoded = encode(stripped);
+          stripped.clear();
+          put(pageKey, encoded);
+          // read back as a hit would be, so that all pages' boxes are single precision
+          textRuns = decode(ByteBuffer.wrap(encoded), fontTable).get(0);
+        }
+        pagedTextRuns.add(textRuns);
+      }
+
+      put(documentKey, encode(pagedTextRuns));
+      return pagedTextRuns;
+    }
+  }
+
+  public synchronized long getDocumentHits() {
+    return documentHits;
+  }
+
+  public synchronized long getDocumentMisses() {
+    return documentMisses;
+  }
+
+  /** Only pages of documents that missed are looked up. */
+  public synchronized long getPageHits() {
+    return pageHits;
+  }
+
+  public synchronized long getPageMisses() {
+    return pageMisses;
+  }
+
+  public synchronized long getEvictions() {
+    return evictions;
+  }
+
+  /** @return the size of the cached files */
+  public synchronized long getBytes() {
+    return bytes;
+  }
+
+  /** Hit rates for documents and pages, and the cache's fill. */
+  @Override
+  public synchronized String toString() {
+    return String.format(
+        Locale.ROOT,
+        "text run cache: documents %s hits, pages %s hits, %d entries, %.1f of %.1f MB, "
+            + "%d evicted",
+        hitRate(documentHits, documentMisses),
+        hitRate(pageHits, pageMisses),
+        entries.size(),
+        bytes / 1048576.0,
+        maxBytes / 1048576.0,
+        evictions);
+  }
+
+  // the entry's content, null if there is none
+  private ByteBuffer get(String fileName) throws IOException {
+    synchronized (this) {
+      if (entries.get(fileName) == null) {
+        return null;
+      }
+    }
+    Path file = directory.resolve(fileName);
+    try {
+      byte[] content = Files.readAllBytes(file);
+      Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+      return ByteBuffer.wrap(content);
+    } catch (NoSuchFileException e) {
+      // evicted by another thread or deleted from outside
+      remove(fileName);
+      return null;
+    }
+  }
+
+  private void put(String fileName, byte[] content) throws IOException {
+    if (content.length > maxBytes) {
+      return;
+    }
+    Path temp = Files.createTempFile(directory, fileName, ".tmp");
+    try {
+      Files.write(temp, content);
+      Files.move(
+          temp,
+          directory.resolve(fileName),
+          StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(temp);
+    }
+
+    List<String> evicted;
+    synchronized (this) {
+      Long previous = entries.put(fileName, (long) content.length);
+      if (previous != null) {
+        bytes -= previous;
+      }
+      bytes += content.length;
+      evicted = evict();
+    }
+    delete(evicted);
+  }
+
+  // drops the least recently used entries down to maxBytes, returns their file names
+  private synchronized List<String> evict() {
+    List<String> evicted = new ArrayList<>();
+    Iterator<Map.Entry<String, Long>> eldest = entries.entrySet().iterator();
+    while (bytes > maxBytes) {
+      Map.Entry<String, Long> entry = eldest.next();
+      bytes -= entry.getValue();
+      evicted.add(entry.getKey());
+      eldest.remove();
+      evictions++;
+    }
+    return evicted;
+  }
+
+  private void delete(List<String> fileNames) throws IOException {
+    for (String fileName : fileNames) {
+      Files.deleteIfExists(directory.resolve(fileName));
+    }
+  }
+
+  private void remove(String fileName) throws IOException {
+    synchronized (this) {
+      Long size = entries.remove(fileName);
+      if (size != null) {
+        bytes -= size;
+      }
+    }
+    Files.deleteIfExists(directory.resolve(fileName));
+  }
+
+  private synchronized void count(boolean document, boolean hit) {
+    if (document) {
+      if (hit) {
+        documentHits++;
+      } else {
+        documentMisses++;
+      }
+    } else if (hit) {
+      pageHits++;
+    } else {
+      pageMisses++;
+    }
+  }
+
+  private static byte[] encode(List<List<TextRun>> pagedTextRuns) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    TextRunEncoder.encode(pagedTextRuns, out);
+    return out.toByteArray();
+  }
+
+  // the runs of all pages of the entry with fontTable's font ids, null if it is unreadable
+  private static List<List<TextRun>> decode(ByteBuffer buffer, FontTable fontTable) {
+    List<List<TextRun>> pagedTextRuns = new ArrayList<>();
+    try {
+      TextRunDecoder decoder = new TextRunDecoder(buffer);
+      while (decoder.hasNextPage()) {
+        TextRunDecoder.Page block = decoder.nextPage();
+        List<TextRun> textRuns = new ArrayList<>(block.size());
+        for (int run = 0; run < block.size(); ++run) {
+          textRuns.add(block.get(run, fontTable.add(block.font(run))));
+        }
+        pagedTextRuns.add(textRuns);
+      }
+      return pagedTextRuns;
+    } catch (IOException | RuntimeException e) {
+      e.printStackTrace();
+      return null;
+    }
+  }
+
+  private MessageDigest newDigest(byte kind) {
+    MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      // every Java platform has SHA-256
+      throw new IllegalStateException(e);
+    }
+    digest.update(kind);
+    digest.update((byte) KEY_VERSION);
+    digest.update((byte) TextRunEncoder.VERSION);
+    digest.update((byte) (preciseGlyphBounds ? 1 : 0));
+    return digest;
+  }
+
+  private static String fileName(byte[] hash) {
+    StringBuilder name = new StringBuilder(2 * hash.length + SUFFIX.length());
+    for (byte b : hash) {
+      name.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+    }
+    return name.append(SUFFIX).toString();
+  }
+
+  private static String hitRate(long hits, long misses) {
+    long lookups = hits + misses;
+    return lookups == 0
+        ? "n/a"
+        : String.format(Locale.ROOT, "%.1f%%", 100.0 * hits / lookups);
+  }
+
+  /**
+   * Hashes what the text runs of a page depend on. Indirect objects are hashed once per document,
+   * so fonts shared by many pages are read once; image data is skipped, it doesn't affect the text.
+   */
+  private final class PageHasher {
+
+    private final byte[] inProgress = new byte[0];
+    private final Map<COSBase, byte[]> indirect = new IdentityHashMap<>();
+
+    byte[] hash(PDPage page) throws IOException {
+      MessageDigest digest = newDigest(PAGE);
+      update(digest, page.getMediaBox());
+      update(digest, page.getCropBox());
+      updateInt(digest, page.getRotation());
+      // the stripper separates the text of article beads
+      List<PDThreadBead> beads = page.getThreadBeads();
+      updateInt(digest, beads.size());
+      for (PDThreadBead bead : beads) {
+        PDRectangle rectangle = bead == null ? null : bead.getRectangle();
+        if (rectangle == null) {
+          digest.update((byte) 'n');
+        } else {
+          update(digest, rectangle);
+        }
+      }
+      update(digest, page.getCOSObject().getItem(COSName.CONTENTS));
+      PDResources resources = page.getResources();
+      update(digest, resources == null ? null : resources.getCOSObject());
+      return digest.digest();
+    }
+
+    private void update(MessageDigest digest, PDRectangle rectangle) {
+      updateInt(digest, Float.floatToIntBits(rectangle.getLowerLeftX()));
+      updateInt(digest, Float.floatToIntBits(rectangle.getLowerLeftY()));
+      updateInt(digest, Float.floatToIntBits(rectangle.getUpperRightX()));
+      updateInt(digest, Float.floatToIntBits(rectangle.getUpperRightY()));
+    }
+
+    private void update(MessageDigest digest, COSBase base) throws IOException {
+      if (base instanceof COSObject) {
+        base = ((COSObject) base).getObject();
+        if (base == null) {
+          digest.update((byte) 'n');
+          return;
+        }
+        byte[] hash = indirect.get(base);
+        if (hash == null) {
+          indirect.put(base, inProgress);
+          MessageDigest objectDigest = newDigest(PAGE);
+          updateDirect(objectDigest, base);
+          hash = objectDigest.digest();
+          indirect.put(base, hash);
+        }
+        // a reference back to an object being hashed adds just the marker
+        digest.update((byte) 'R');
+        digest.update(hash);
+      } else {
+        updateDirect(digest, base);
+      }
+    }
+
+    private void updateDirect(MessageDigest digest, COSBase base) throws IOException {
+      if (base instanceof COSStream) {
+        COSStream stream = (COSStream) base;
+        digest.update((byte) 's');
+        updateEntries(digest, stream);
+        if (!COSName.IMAGE.equals(stream.getCOSName(COSName.SUBTYPE))) {
+          byte[] buffer = new byte[8192];
+          try (InputStream in = stream.createRawInputStream()) {
+            for (int n = in.read(buffer); n != -1; n = in.read(buffer)) {
+              digest.update(buffer, 0, n);
+            }
+          }
+        }
+      } else if (base instanceof COSDictionary) {
+        digest.update((byte) 'd');
+        updateEntries(digest, (COSDictionary) base);
+      } else if (base instanceof COSArray) {
+        COSArray array = (COSArray) base;
+        digest.update((byte) 'a');
+        updateInt(digest, array.size());
+        for (COSBase item : array) {
+          update(digest, item);
+        }
+      } else if (base instanceof COSName) {
+        digest.update((byte) '/');
+        updateBytes(digest, ((COSName) base).getName().getBytes(StandardCharsets.UTF_8));
+      } else if (base instanceof COSString) {
+        digest.update((byte) '(');
+        updateBytes(digest, ((COSString) base).getBytes());
+      } else if (base instanceof COSInteger) {
+        digest.update((byte) 'i');
+        long value = ((COSInteger) base).longValue();
+        updateInt(digest, (int) (value >>> 32));
+        updateInt(digest, (int) value);
+      } else if (base instanceof COSFloat) {
+        digest.update((byte) 'f');
+        updateInt(digest, Float.floatToIntBits(((COSFloat) base).floatValue()));
+      } else if (base instanceof COSBoolean) {
+        digest.update(((COSBoolean) base).getValue() ? (byte) 't' : (byte) 'b');
+      } else {
+        digest.update((byte) 'n');
+      }
+    }
+
+    private void updateEntries(MessageDigest digest, COSDictionary dictionary)
+        throws IOException {
+      updateInt(digest, dictionary.size());
+      for (Map.Entry<COSName, COSBase> entry : dictionary.entrySet()) {
+        updateBytes(digest, entry.getKey().getName().getBytes(StandardCharsets.UTF_8));
+        update(digest, entry.getValue());
+      }
+    }
+
+    private void updateBytes(MessageDigest digest, byte[] bytes) {
+      updateInt(digest, bytes.length);
+      digest.update(bytes);
+    }
+
+    private void updateInt(MessageDigest digest, int value) {
+      digest.update((byte) (value >>> 24));
+      digest.update((byte) (value >>> 16));
+      digest.update((byte) (value >>> 8));
+      digest.update((byte) value);
+    }
+  }
+}
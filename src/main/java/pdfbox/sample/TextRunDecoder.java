@@ -0,0 +1,284 @@
+package pdfbox.sample;
+
+import java.awt.geom.Rectangle2D;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.pdfbox.pdmodel.graphics.state.RenderingMode;
+
+/**
+ * Reads the format written by {@link TextRunEncoder} page by page.
+ *
+ * <p>A {@link Page} reads its float columns and text straight from the underlying buffer, which
+ * may be a memory mapped file; only the variable length integer columns are decoded when the page
+ * is opened. Decoded runs refer to their fonts by the ids of the stream, see {@link
+ * #getFonts()}.
+ */
+public final class TextRunDecoder {
+
+  private static final RenderingMode[] RENDERING_MODES = RenderingMode.values();
+
+  // five floats, a rendering mode byte and four varints of at least a byte each
+  private static final int MIN_RUN_BYTES = 5 * 4 + 1 + 4;
+
+  private final ByteBuffer buffer;
+  private final List<FontDescriptor> fonts = new ArrayList<>();
+
+  public TextRunDecoder(ByteBuffer buffer) throws IOException {
+    this.buffer = buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+    if (this.buffer.remaining() < 8 || this.buffer.getInt() != TextRunEncoder.MAGIC) {
+      throw new IOException("Not a text run stream");
+    }
+    int version = this.buffer.getInt();
+    if (version != TextRunEncoder.VERSION) {
+      throw new IOException("Unsupported text run stream version " + version);
+    }
+  }
+
+  /** Maps the file into memory instead of reading it onto the heap. */
+  public static TextRunDecoder map(Path file) throws IOException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      return new TextRunDecoder(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+    }
+  }
+
+  public static List<List<TextRun>> decode(ByteBuffer buffer) throws IOException {
+    TextRunDecoder decoder = new TextRunDecoder(buffer);
+    List<List<TextRun>> pagedTextRuns = new ArrayList<>();
+    while (decoder.hasNextPage()) {
+      pagedTextRuns.add(decoder.nextPage().toTextRuns());
+    }
+    return pagedTextRuns;
+  }
+
+  public boolean hasNextPage() {
+    return buffer.hasRemaining();
+  }
+
+  public Page nextPage() throws IOException {
+    if (buffer.remaining() < 4) {
+      throw new IOException("Truncated text run stream");
+    }
+    int length = buffer.getInt();
+    if (length < 0 || length > buffer.remaining()) {
+      throw new IOException("Truncated text run stream");
+    }
+    int start = buffer.position();
+    buffer.position(start + length);
+    return new Page(start, start + length);
+  }
+
+  /** Fonts by font id, as far as the stream has been read. */
+  public List<FontDescriptor> getFonts() {
+    return fonts;
+  }
+
+  /** Column view of one page block. */
+  public final class Page {
+    private final int pageIndex;
+    private final int size;
+    private final int floatColumns;
+    private final int[] strokingColor;
+    private final int[] nonStrokingColor;
+    private final int renderingModes;
+    private final int[] fontIds;
+    private final int[] textOffsets;
+    private final int end;
+
+    private int position;
+
+    private Page(int start, int end) throws IOException {
+      this.end = end;
+      position = start;
+      pageIndex = getVarint();
+      size = getVarint();
+      int newFonts = getVarint();
+      for (int i = 0; i < newFonts; ++i) {
+        String name = getNullableString();
+        String family = getNullableString();
+        int flags = getVarint();
+        checkRemaining(9);
+        byte style = buffer.get(position);
+        float ascent = buffer.getFloat(position + 1);
+        float descent = buffer.getFloat(position + 5);
+        position += 9;
+        fonts.add(
+            FontDescriptor.of(
+                name,
+                family,
+                flags,
+                (style & 1) != 0,
+                (style & 2) != 0,
+                (style & 4) != 0,
+                (style & 8) != 0,
+                ascent,
+                descent));
+      }
+
+      if (size < 0 || size > (end - position) / MIN_RUN_BYTES) {
+        throw new IOException("Corrupt page block for page " + pageIndex);
+      }
+      floatColumns = position;
+      position += 5 * 4 * size;
+      strokingColor = getVarints(size);
+      nonStrokingColor = getVarints(size);
+      renderingModes = position;
+      position += size;
+      fontIds = getVarints(size);
+      for (int i = 0; i < size; ++i) {
+        if ((buffer.get(renderingModes + i) & 0xFF) >= RENDERING_MODES.length
+            || fontIds[i] < 0
+            || fontIds[i] >= fonts.size()) {
+          throw new IOException("Corrupt page block for page " + pageIndex);
+        }
+      }
+
+      textOffsets = new int[size + 1];
+      int[] lengths = getVarints(size);
+      textOffsets[0] = position;
+      for (int i = 0; i < size; ++i) {
+        if (lengths[i] < 0 || lengths[i] > end - textOffsets[i]) {
+          throw new IOException("Corrupt page block for page " + pageIndex);
+        }
+        textOffsets[i + 1] = textOffsets[i] + lengths[i];
+      }
+      if (textOffsets[size] != end) {
+        throw new IOException("Corrupt page block for page " + pageIndex);
+      }
+    }
+
+    public int pageIndex() {
+      return pageIndex;
+    }
+
+    public int size() {
+      return size;
+    }
+
+    public float x(int run) {
+      return buffer.getFloat(floatColumns + 4 * run);
+    }
+
+    public float y(int run) {
+      return buffer.getFloat(floatColumns + 4 * (size + run));
+    }
+
+    public float width(int run) {
+      return buffer.getFloat(floatColumns + 4 * (2 * size + run));
+    }
+
+    public float height(int run) {
+      return buffer.getFloat(floatColumns + 4 * (3 * size + run));
+    }
+
+    public float fontSize(int run) {
+      return buffer.getFloat(floatColumns + 4 * (4 * size + run));
+    }
+
+    public int strokingColor(int run) {
+      return strokingColor[run];
+    }
+
+    public int nonStrokingColor(int run) {
+      return nonStrokingColor[run];
+    }
+
+    public RenderingMode renderingMode(int run) {
+      return RENDERING_MODES[buffer.get(renderingModes + run)];
+    }
+
+    public int fontId(int run) {
+      return fontIds[run];
+    }
+
+    public FontDescriptor font(int run) {
+      return fonts.get(fontIds[run]);
+    }
+
+    public String text(int run) {
+      return getString(textOffsets[run], textOffsets[run + 1] - textOffsets[run]);
+    }
+
+    /** Materialises run {@code run}. */
+    public TextRun get(int run) {
+      return get(run, fontIds[run]);
+    }
+
+    /** Materialises run {@code run} with another font id, e.g. from a {@link FontTable}. */
+    public TextRun get(int run, int fontId) {
+      return new TextRun(
+          text(run),
+          new Rectangle2D.Float(x(run), y(run), width(run), height(run)),
+          strokingColor(run),
+          nonStrokingColor(run),
+          renderingMode(run),
+          fontSize(run),
+          font(run),
+          fontId);
+    }
+
+    public List<TextRun> toTextRuns() {
+      List<TextRun> textRuns = new ArrayList<>(size);
+      for (int i = 0; i < size; ++i) {
+        textRuns.add(get(i));
+      }
+      return textRuns;
+    }
+
+    private String getNullableString() throws IOException {
+      int length = getVarint() - 1;
+      if (length < 0) {
+        return null;
+      }
+      checkRemaining(length);
+      String value = getString(position, length);
+      position += length;
+      return value;
+    }
+
+    private int getVarint() throws IOException {
+      int value = 0;
+      for (int shift = 0; shift < 35; shift += 7) {
+        checkRemaining(1);
+        byte b = buffer.get(position++);
+        value |= (b & 0x7F) << shift;
+        if (b >= 0) {
+          return value;
+        }
+      }
+      throw new IOException("Malformed varint in page block");
+    }
+
+    private void checkRemaining(int bytes) throws IOException {
+      if (bytes > end - position) {
+        throw new IOException("Truncated page block");
+      }
+    }
+
+    private int[] getVarints(int count) throws IOException {
+      int[] values = new int[count];
+      for (int i = 0; i < count; ++i) {
+        values[i] = getVarint();
+      }
+      return values;
+    }
+  }
+
+  private String getString(int offset, int length) {
+    if (buffer.hasArray()) {
+      return new String(
+          buffer.array(), buffer.arrayOffset() + offset, length, StandardCharsets.UTF_8);
+    }
+    byte[] bytes = new byte[length];
+    ByteBuffer view = buffer.duplicate();
+    view.position(offset);
+    view.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,188 @@
+package pdfbox.sample;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes text runs in a compact, column oriented binary format, one block per page, as the pages
+ * arrive. Read it back with {@link TextRunDecoder}.
+ *
+ * <p>Layout, little endian:
+ *
+ * <pre>
+ * header     "TRUN", int version
+ * page block int length of the rest of the block
+ *            varint page index, varint run count n
+ *            varint new font count, per font: name, family, varint flags,
+ *              byte style (1 bold, 2 italic, 4 embedded, 8 subset), float ascent, float descent
+ *            float[n] x, float[n] y, float[n] width, float[n] height, float[n] font size
+ *            varint[n] stroking colour, varint[n] non stroking colour
+ *            byte[n] rendering mode
+ *            varint[n] font id
+ *            varint[n] text length in bytes, then the UTF-8 text heap
+ * </pre>
+ *
+ * Names and families are a varint of the UTF-8 length + 1, 0 for none, then the bytes. Font ids
+ * index a dictionary that spans the whole stream. Each page block only adds the fonts it uses for
+ * the first time.
+ */
+public final class TextRunEncoder implements TextRunListener, Closeable {
+
+  static final int MAGIC = 0x4E555254; // "TRUN" read as a little endian int
+  static final int VERSION = 2;
+
+  private final OutputStream out;
+  // descriptors are interned, identity is equality
+  private final Map<FontDescriptor, Integer> fontIds = new IdentityHashMap<>();
+  private final List<FontDescriptor> newFonts = new ArrayList<>();
+  private ByteBuffer block = ByteBuffer.allocate(64 * 1024).order(ByteOrder.LITTLE_ENDIAN);
+  private byte[][] texts = new byte[256][];
+
+  public TextRunEncoder(OutputStream out) throws IOException {
+    this.out = out;
+    ByteBuffer header = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+    header.putInt(MAGIC).putInt(VERSION);
+    out.write(header.array());
+  }
+
+  public static void encode(List<List<TextRun>> pagedTextRuns, OutputStream out)
+      throws IOException {
+    TextRunEncoder encoder = new TextRunEncoder(out);
+    for (int page = 0; page < pagedTextRuns.size(); ++page) {
+      encoder.onPage(page, pagedTextRuns.get(page));
+    }
+    out.flush();
+  }
+
+  @Override
+  public void onPage(int pageIndex, List<TextRun> textRuns) throws IOException {
+    int n = textRuns.size();
+    if (texts.length < n) {
+      texts = new byte[n][];
+    }
+
+    newFonts.clear();
+    int textBytes = 0;
+    for (int i = 0; i < n; ++i) {
+      TextRun run = textRuns.get(i);
+      if (!fontIds.containsKey(run.font)) {
+        fontIds.put(run.font, fontIds.size());
+        newFonts.add(run.font);
+      }
+      texts[i] = run.text.getBytes(StandardCharsets.UTF_8);
+      textBytes += texts[i].length;
+    }
+
+    block.clear();
+    block.position(4);
+    ensureRemaining(15);
+    putVarint(pageIndex);
+    putVarint(n);
+    putVarint(newFonts.size());
+    for (FontDescriptor font : newFonts) {
+      putFont(font);
+    }
+
+    // worst case with 5 byte varints
+    ensureRemaining(n * (5 * 4 + 4 * 5 + 1) + textBytes);
+    for (int i = 0; i < n; ++i) {
+      block.putFloat((float) textRuns.get(i).box.getX());
+    }
+    for (int i = 0; i < n; ++i) {
+      block.putFloat((float) textRuns.get(i).box.getY());
+    }
+    for (int i = 0; i < n; ++i) {
+      block.putFloat((float) textRuns.get(i).box.getWidth());
+    }
+    for (int i = 0; i < n; ++i) {
+      block.putFloat((float) textRuns.get(i).box.getHeight());
+    }
+    for (int i = 0; i < n; ++i) {
+      block.putFloat(textRuns.get(i).fontSize);
+    }
+    for (int i = 0; i < n; ++i) {
+      putVarint(textRuns.get(i).strokingColor);
+    }
+    for (int i = 0; i < n; ++i) {
+      putVarint(textRuns.get(i).nonStrokingColor);
+    }
+    for (int i = 0; i < n; ++i) {
+      block.put((byte) textRuns.get(i).renderingMode.ordinal());
+    }
+    for (int i = 0; i < n; ++i) {
+      putVarint(fontIds.get(textRuns.get(i).font));
+    }
+    for (int i = 0; i < n; ++i) {
+      putVarint(texts[i].length);
+    }
+    for (int i = 0; i < n; ++i) {
+      block.put(texts[i]);
+      texts[i] = null;
+    }
+
+    block.putInt(0, block.position() - 4);
+    out.write(block.array(), 0, block.position());
+  }
+
+  @Override
+  public void close() throws IOException {
+    out.close();
+  }
+
+  private void putFont(FontDescriptor font) {
+    if (font == null) {
+      // runs built without a font
+      font = FontDescriptor.of(null, null, 0, false, false, false, false, 0, 0);
+    }
+    putString(font.name);
+    putString(font.family);
+    ensureRemaining(5 + 1 + 2 * 4);
+    putVarint(font.flags);
+    block.put(
+        (byte)
+            ((font.bold ? 1 : 0)
+                | (font.italic ? 2 : 0)
+                | (font.embedded ? 4 : 0)
+                | (font.subset ? 8 : 0)));
+    block.putFloat(font.ascent);
+    block.putFloat(font.descent);
+  }
+
+  private void putString(String value) {
+    if (value == null) {
+      ensureRemaining(1);
+      putVarint(0);
+      return;
+    }
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    ensureRemaining(5 + bytes.length);
+    putVarint(bytes.length + 1);
+    block.put(bytes);
+  }
+
+  private void putVarint(int value) {
+    while ((value & ~0x7F) != 0) {
+      block.put((byte) ((value & 0x7F) | 0x80));
+      value >>>= 7;
+    }
+    block.put((byte) value);
+  }
+
+  private void ensureRemaining(int bytes) {
+    if (block.remaining() < bytes) {
+      int capacity = Math.max(block.capacity() * 2, block.position() + bytes);
+      ByteBuffer grown = ByteBuffer.allocate(capacity).order(ByteOrder.LITTLE_ENDIAN);
+      block.flip();
+      grown.put(block);
+      block = grown;
+    }
+  }
+}
@@ -0,0 +1,341 @@
+package pdfbox.sample;
+
+import java.awt.geom.Rectangle2D;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+/**
+ * Spatial index over the boxes of one page's text runs, answering rectangle, point and nearest
+ * run queries with run indexes, i.e. positions in the page's run list.
+ *
+ * <p>The page area covered by the runs is split into a grid of about one cell per run. Each cell
+ * lists the runs overlapping it, all lists packed into one array with an offset per cell. Boxes
+ * are kept in primitive arrays. Rectangle and point queries match exactly what {@link
+ * Rectangle2D#intersects} and {@link Rectangle2D#contains(double, double)} on the run's box
+ * would. Instances are immutable and may be queried from several threads.
+ */
+public final class TextRunIndex {
+
+  static final int MAX_CELLS = 1 << 16;
+
+  private static final int[] NONE = new int[0];
+
+  private final int size;
+  private final double[] minX;
+  private final double[] minY;
+  private final double[] maxX;
+  private final double[] maxY;
+
+  // grid over the union of all boxes
+  private final double gridX;
+  private final double gridY;
+  private final double cellWidth;
+  private final double cellHeight;
+  private final int columns;
+  private final int rows;
+
+  // the runs of cell row * columns + column are cellRuns[cellStart[cell] .. cellStart[cell + 1]]
+  private final int[] cellStart;
+  private final int[] cellRuns;
+
+  private TextRunIndex(int size, double[] minX, double[] minY, double[] maxX, double[] maxY) {
+    this.size = size;
+    this.minX = minX;
+    this.minY = minY;
+    this.maxX = maxX;
+    this.maxY = maxY;
+
+    double x0 = Double.POSITIVE_INFINITY;
+    double y0 = Double.POSITIVE_INFINITY;
+    double x1 = Double.NEGATIVE_INFINITY;
+    double y1 = Double.NEGATIVE_INFINITY;
+    for (int run = 0; run < size; ++run) {
+      x0 = Math.min(x0, minX[run]);
+      y0 = Math.min(y0, minY[run]);
+      x1 = Math.max(x1, maxX[run]);
+      y1 = Math.max(y1, maxY[run]);
+    }
+    double width = size > 0 ? x1 - x0 : 0;
+    double height = size > 0 ? y1 - y0 : 0;
+
+    int cells = Math.max(1, Math.min(size, MAX_CELLS));
+    int gridColumns;
+    if (width > 0 && height > 0) {
+      gridColumns = (int) Math.round(Math.sqrt(cells * width / height));
+    } else {
+      gridColumns = width > 0 ? cells : 1;
+    }
+    columns = Math.max(1, Math.min(cells, gridColumns));
+    rows = Math.max(1, cells / columns);
+    gridX = size > 0 ? x0 : 0;
+    gridY = size > 0 ? y0 : 0;
+    cellWidth = width > 0 ? width / columns : 0;
+    cellHeight = height > 0 ? height / rows : 0;
+
+    // count, then fill in run order so that every cell lists its runs ascending
+    cellStart = new int[columns * rows + 1];
+    for (int run = 0; run < size; ++run) {
+      for (int row = row(minY[run]), lastRow = row(maxY[run]); row <= lastRow; ++row) {
+        for (int column = column(minX[run]), last = column(maxX[run]); column <= last; ++column) {
+          cellStart[row * columns + column + 1]++;
+        }
+      }
+    }
+    for (int cell = 0; cell < columns * rows; ++cell) {
+      cellStart[cell + 1] += cellStart[cell];
+    }
+    cellRuns = new int[cellStart[columns * rows]];
+    int[] fill = Arrays.copyOf(cellStart, columns * rows);
+    for (int run = 0; run < size; ++run) {
+      for (int row = row(minY[run]), lastRow = row(maxY[run]); row <= lastRow; ++row) {
+        for (int column = column(minX[run]), last = column(maxX[run]); column <= last; ++column) {
+          cellRuns[fill[row * columns + column]++] = run;
+        }
+      }
+    }
+  }
+
+  /** Indexes the boxes of {@code textRuns}. */
+  public static TextRunIndex of(List<TextRun> textRuns) {
+    Builder builder = new Builder();
+    for (TextRun textRun : textRuns) {
+      builder.add(textRun.box);
+    }
+    return builder.build();
+  }
+
+  /** @return the number of runs indexed */
+  public int size() {
+    return size;
+  }
+
+  /** @return the indexes of the runs whose box intersects {@code area}, ascending */
+  public int[] intersecting(Rectangle2D area) {
+    IntList runs = new IntList();
+    forEachIntersecting(area, runs);
+    return runs.toSortedArray();
+  }
+
+  /**
+   * Passes the index of every run whose box intersects {@code area} to {@code action} once, in no
+   * particular order.
+   */
+  public void forEachIntersecting(Rectangle2D area, IntConsumer action) {
+    if (size == 0 || area.isEmpty()) {
+      return;
+    }
+    double x0 = area.getX();
+    double y0 = area.getY();
+    double x1 = x0 + area.getWidth();
+    double y1 = y0 + area.getHeight();
+    int firstColumn = column(x0);
+    int lastColumn = column(x1);
+    int firstRow = row(y0);
+    int lastRow = row(y1);
+    for (int row = firstRow; row <= lastRow; ++row) {
+      for (int column = firstColumn; column <= lastColumn; ++column) {
+        int cell = row * columns + column;
+        for (int i = cellStart[cell]; i < cellStart[cell + 1]; ++i) {
+          int run = cellRuns[i];
+          // a run spanning several cells is reported from the first of them the query visits
+          if (Math.max(column(minX[run]), firstColumn) == column
+              && Math.max(row(minY[run]), firstRow) == row
+              && intersects(run, x0, y0, x1, y1)) {
+            action.accept(run);
+          }
+        }
+      }
+    }
+  }
+
+  /** @return the indexes of the runs whose box contains the point, ascending */
+  public int[] containing(double x, double y) {
+    IntList runs = new IntList();
+    forEachContaining(x, y, runs);
+    return runs.toSortedArray();
+  }
+
+  /** Passes the index of every run whose box contains the point to {@code action}, ascending. */
+  public void forEachContaining(double x, double y, IntConsumer action) {
+    if (size == 0) {
+      return;
+    }
+    int cell = row(y) * columns + column(x);
+    for (int i = cellStart[cell]; i < cellStart[cell + 1]; ++i) {
+      int run = cellRuns[i];
+      if (x >= minX[run] && y >= minY[run] && x < maxX[run] && y < maxY[run]) {
+        action.accept(run);
+      }
+    }
+  }
+
+  /**
+   * @return the index of the run whose box is nearest to the point, 0 away if the box contains
+   *     it, the lowest index among equally near runs; -1 if there are no runs
+   */
+  public int nearest(double x, double y) {
+    if (size == 0) {
+      return -1;
+    }
+    int centerColumn = column(x);
+    int centerRow = row(y);
+    int best = -1;
+    double bestDistance = Double.POSITIVE_INFINITY;
+    for (int ring = 0; ; ++ring) {
+      int firstColumn = centerColumn - ring;
+      int lastColumn = centerColumn + ring;
+      int firstRow = centerRow - ring;
+      int lastRow = centerRow + ring;
+      for (int row = Math.max(firstRow, 0); row <= Math.min(lastRow, rows - 1); ++row) {
+        boolean edgeRow = row == firstRow || row == lastRow;
+        for (int column = Math.max(firstColumn, 0);
+            column <= Math.min(lastColumn, columns - 1);
+            column += edgeRow || column == lastColumn ? 1 : lastColumn - column) {
+          int cell = row * columns + column;
+          for (int i = cellStart[cell]; i < cellStart[cell + 1]; ++i) {
+            int run = cellRuns[i];
+            double distance = distanceSquared(run, x, y);
+            if (distance < bestDistance || distance == bestDistance && run < best) {
+              best = run;
+              bestDistance = distance;
+            }
+          }
+        }
+      }
+
+      // runs not seen yet lie wholly outside the cells searched so far
+      double unseen = Double.POSITIVE_INFINITY;
+      if (firstColumn > 0) {
+        unseen = Math.min(unseen, x - (gridX + firstColumn * cellWidth));
+      }
+      if (lastColumn < columns - 1) {
+        unseen = Math.min(unseen, gridX + (lastColumn + 1) * cellWidth - x);
+      }
+      if (firstRow > 0) {
+        unseen = Math.min(unseen, y - (gridY + firstRow * cellHeight));
+      }
+      if (lastRow < rows - 1) {
+        unseen = Math.min(unseen, gridY + (lastRow + 1) * cellHeight - y);
+      }
+      if (unseen == Double.POSITIVE_INFINITY || bestDistance < unseen * unseen) {
+        return best;
+      }
+    }
+  }
+
+  /** @return the box of a run, as given to the index */
+  public Rectangle2D getBox(int run) {
+    return new Rectangle2D.Double(
+        minX[run], minY[run], maxX[run] - minX[run], maxY[run] - minY[run]);
+  }
+
+  @Override
+  public String toString() {
+    return "TextRunIndex{"
+        + "runs="
+        + size
+        + ", grid="
+        + columns
+        + 'x'
+        + rows
+        + ", entries="
+        + cellRuns.length
+        + '}';
+  }
+
+  private boolean intersects(int run, double x0, double y0, double x1, double y1) {
+    return maxX[run] > minX[run]
+        && maxY[run] > minY[run]
+        && maxX[run] > x0
+        && maxY[run] > y0
+        && minX[run] < x1
+        && minY[run] < y1;
+  }
+
+  private double distanceSquared(int run, double x, double y) {
+    double dx = Math.max(0, Math.max(minX[run] - x, x - maxX[run]));
+    double dy = Math.max(0, Math.max(minY[run] - y, y - maxY[run]));
+    return dx * dx + dy * dy;
+  }
+
+  private int column(double x) {
+    if (cellWidth == 0 || !(x > gridX)) {
+      return 0;
+    }
+    return (int) Math.min((x - gridX) / cellWidth, columns - 1);
+  }
+
+  private int row(double y) {
+    if (cellHeight == 0 || !(y > gridY)) {
+      return 0;
+    }
+    return (int) Math.min((y - gridY) / cellHeight, rows - 1);
+  }
+
+  /**
+   * Collects the boxes of a page's runs in run order, reusable for the next page after {@link
+   * #clear()}.
+   */
+  public static final class Builder {
+    private static final int INITIAL_CAPACITY = 64;
+
+    private double[] minX = new double[INITIAL_CAPACITY];
+    private double[] minY = new double[INITIAL_CAPACITY];
+    private double[] maxX = new double[INITIAL_CAPACITY];
+    private double[] maxY = new double[INITIAL_CAPACITY];
+    private int size;
+
+    /** Adds the box of the next run. */
+    public Builder add(Rectangle2D box) {
+      if (size == minX.length) {
+        int capacity = 2 * size;
+        minX = Arrays.copyOf(minX, capacity);
+        minY = Arrays.copyOf(minY, capacity);
+        maxX = Arrays.copyOf(maxX, capacity);
+        maxY = Arrays.copyOf(maxY, capacity);
+      }
+      double x = box.getX();
+      double y = box.getY();
+      minX[size] = x;
+      minY[size] = y;
+      maxX[size] = x + box.getWidth();
+      maxY[size] = y + box.getHeight();
+      size++;
+      return this;
+    }
+
+    public TextRunIndex build() {
+      return new TextRunIndex(
+          size,
+          Arrays.copyOf(minX, size),
+          Arrays.copyOf(minY, size),
+          Arrays.copyOf(maxX, size),
+          Arrays.copyOf(maxY, size));
+    }
+
+    public void clear() {
+      size = 0;
+    }
+  }
+
+  // growable int array, to collect query results without boxing
+  private static final class IntList implements IntConsumer {
+    private int[] values = NONE;
+    private int size;
+
+    @Override
+    public void accept(int value) {
+      if (size == values.length) {
+        values = Arrays.copyOf(values, Math.max(8, 2 * size));
+      }
+      values[size++] = value;
+    }
+
+    int[] toSortedArray() {
+      int[] sorted = Arrays.copyOf(values, size);
+      Arrays.sort(sorted);
+      return sorted;
+    }
+  }
+}
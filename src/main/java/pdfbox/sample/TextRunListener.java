@@ -0,0 +1,15 @@
+package pdfbox.sample;
+
+import java.io.IOException;
+import java.util.List;
+
+/** Receives the text runs of each page as soon as that page has been stripped. */
+@FunctionalInterface
+public interface TextRunListener {
+
+  /**
+   * @param pageIndex zero based page index
+   * @param textRuns the runs of the page, no longer referenced by the stripper afterwards
+   */
+  void onPage(int pageIndex, List<TextRun> textRuns) throws IOException;
+}
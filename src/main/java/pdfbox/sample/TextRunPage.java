@@ -0,0 +1,348 @@
+package pdfbox.sample;
+
+import java.awt.geom.Rectangle2D;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+import org.apache.pdfbox.pdmodel.graphics.state.RenderingMode;
+
+/**
+ * The text runs of one page in columns of primitives instead of one {@link TextRun} per run: a
+ * float array each for the box and the font size, int arrays for the colours and font ids, a byte
+ * per rendering mode, and all texts in one char array.
+ *
+ * <p>Read a column by run index, or walk the runs with a {@link Cursor}, which allocates nothing
+ * unless asked for a run's text as a string. {@link #asList()} materialises {@link TextRun}s for
+ * code that wants those, with single precision boxes. Pages are immutable.
+ */
+public final class TextRunPage {
+
+  private static final RenderingMode[] RENDERING_MODES = RenderingMode.values();
+
+  private final int pageIndex;
+  private final int size;
+  private final float[] x;
+  private final float[] y;
+  private final float[] width;
+  private final float[] height;
+  private final float[] fontSize;
+  private final int[] strokingColor;
+  private final int[] nonStrokingColor;
+  private final byte[] renderingMode;
+  private final int[] fontId;
+  private final FontDescriptor[] fonts;
+
+  // the text of run i is text[textOffsets[i] .. textOffsets[i + 1]]
+  private final char[] text;
+  private final int[] textOffsets;
+
+  private TextRunPage(int pageIndex, Builder builder, FontDescriptor[] fonts) {
+    this.pageIndex = pageIndex;
+    size = builder.size;
+    x = Arrays.copyOf(builder.x, size);
+    y = Arrays.copyOf(builder.y, size);
+    width = Arrays.copyOf(builder.width, size);
+    height = Arrays.copyOf(builder.height, size);
+    fontSize = Arrays.copyOf(builder.fontSize, size);
+    strokingColor = Arrays.copyOf(builder.strokingColor, size);
+    nonStrokingColor = Arrays.copyOf(builder.nonStrokingColor, size);
+    renderingMode = Arrays.copyOf(builder.renderingMode, size);
+    fontId = Arrays.copyOf(builder.fontId, size);
+    textOffsets = Arrays.copyOf(builder.textOffsets, size + 1);
+    text = Arrays.copyOf(builder.text, textOffsets[size]);
+    this.fonts = fonts;
+  }
+
+  /** Copies {@code textRuns} into columns. */
+  public static TextRunPage of(int pageIndex, List<TextRun> textRuns) {
+    Builder builder = new Builder();
+    FontDescriptor[] fonts = new FontDescriptor[0];
+    for (TextRun run : textRuns) {
+      builder.add(run);
+      if (run.fontId >= fonts.length) {
+        fonts = Arrays.copyOf(fonts, run.fontId + 1);
+      }
+      fonts[run.fontId] = run.font;
+    }
+    return new TextRunPage(pageIndex, builder, fonts);
+  }
+
+  /** 0 based index of the page in its document. */
+  public int pageIndex() {
+    return pageIndex;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public float x(int run) {
+    return x[run];
+  }
+
+  public float y(int run) {
+    return y[run];
+  }
+
+  public float width(int run) {
+    return width[run];
+  }
+
+  public float height(int run) {
+    return height[run];
+  }
+
+  public float fontSize(int run) {
+    return fontSize[run];
+  }
+
+  public int strokingColor(int run) {
+    return strokingColor[run];
+  }
+
+  public int nonStrokingColor(int run) {
+    return nonStrokingColor[run];
+  }
+
+  public RenderingMode renderingMode(int run) {
+    return RENDERING_MODES[renderingMode[run]];
+  }
+
+  /** @return the font's id in the {@link FontTable} of the page's document */
+  public int fontId(int run) {
+    return fontId[run];
+  }
+
+  public FontDescriptor font(int run) {
+    return fonts[fontId[run]];
+  }
+
+  public String text(int run) {
+    return new String(text, textOffsets[run], textOffsets[run + 1] - textOffsets[run]);
+  }
+
+  public int textLength(int run) {
+    return textOffsets[run + 1] - textOffsets[run];
+  }
+
+  /** Appends the run's text to {@code builder} without creating a string. */
+  public StringBuilder appendText(int run, StringBuilder builder) {
+    return builder.append(text, textOffsets[run], textOffsets[run + 1] - textOffsets[run]);
+  }
+
+  /** Materialises run {@code run}. */
+  public TextRun get(int run) {
+    return new TextRun(
+        text(run),
+        new Rectangle2D.Float(x[run], y[run], width[run], height[run]),
+        strokingColor[run],
+        nonStrokingColor[run],
+        renderingMode(run),
+        fontSize[run],
+        font(run),
+        fontId[run]);
+  }
+
+  /** @return a cursor before the first run */
+  public Cursor cursor() {
+    return new Cursor();
+  }
+
+  /** @return a view of the runs that materialises a {@link TextRun} on every {@code get} */
+  public List<TextRun> asList() {
+    return new RunList();
+  }
+
+  @Override
+  public String toString() {
+    return "TextRunPage{" + "pageIndex=" + pageIndex + ", size=" + size + '}';
+  }
+
+  /**
+   * One position in the page, moved with {@link #next()}; its accessors read the columns at that
+   * position.
+   */
+  public final class Cursor {
+    private int run = -1;
+
+    private Cursor() {}
+
+    /** @return whether there is another run, which is then the current one */
+    public boolean next() {
+      if (run < size) {
+        run++;
+      }
+      return run < size;
+    }
+
+    /** Makes {@code run} the current run. */
+    public Cursor moveTo(int run) {
+      if (run < 0 || run >= size) {
+        throw new IndexOutOfBoundsException("run " + run + " of " + size);
+      }
+      this.run = run;
+      return this;
+    }
+
+    public int index() {
+      return run;
+    }
+
+    public float x() {
+      return x[run];
+    }
+
+    public float y() {
+      return y[run];
+    }
+
+    public float width() {
+      return width[run];
+    }
+
+    public float height() {
+      return height[run];
+    }
+
+    public float fontSize() {
+      return fontSize[run];
+    }
+
+    public int strokingColor() {
+      return strokingColor[run];
+    }
+
+    public int nonStrokingColor() {
+      return nonStrokingColor[run];
+    }
+
+    public RenderingMode renderingMode() {
+      return RENDERING_MODES[renderingMode[run]];
+    }
+
+    public int fontId() {
+      return fontId[run];
+    }
+
+    public FontDescriptor font() {
+      return fonts[fontId[run]];
+    }
+
+    public String text() {
+      return TextRunPage.this.text(run);
+    }
+
+    public int textLength() {
+      return TextRunPage.this.textLength(run);
+    }
+
+    public StringBuilder appendText(StringBuilder builder) {
+      return TextRunPage.this.appendText(run, builder);
+    }
+  }
+
+  private final class RunList extends AbstractList<TextRun> implements RandomAccess {
+    @Override
+    public TextRun get(int index) {
+      if (index < 0 || index >= size) {
+        throw new IndexOutOfBoundsException("run " + index + " of " + size);
+      }
+      return TextRunPage.this.get(index);
+    }
+
+    @Override
+    public int size() {
+      return size;
+    }
+  }
+
+  /**
+   * Collects the runs of a page in run order, reusable for the next page after {@link #clear()}.
+   */
+  public static final class Builder {
+    private static final int INITIAL_CAPACITY = 64;
+
+    private int size;
+    private float[] x = new float[INITIAL_CAPACITY];
+    private float[] y = new float[INITIAL_CAPACITY];
+    private float[] width = new float[INITIAL_CAPACITY];
+    private float[] height = new float[INITIAL_CAPACITY];
+    private float[] fontSize = new float[INITIAL_CAPACITY];
+    private int[] strokingColor = new int[INITIAL_CAPACITY];
+    private int[] nonStrokingColor = new int[INITIAL_CAPACITY];
+    private byte[] renderingMode = new byte[INITIAL_CAPACITY];
+    private int[] fontId = new int[INITIAL_CAPACITY];
+    private int[] textOffsets = new int[INITIAL_CAPACITY + 1];
+    private char[] text = new char[16 * INITIAL_CAPACITY];
+
+    public Builder add(TextRun run) {
+      return add(
+          run.text,
+          run.box,
+          run.strokingColor,
+          run.nonStrokingColor,
+          run.renderingMode,
+          run.fontSize,
+          run.fontId);
+    }
+
+    public Builder add(
+        String runText,
+        Rectangle2D box,
+        int stroking,
+        int nonStroking,
+        RenderingMode mode,
+        float size,
+        int font) {
+      if (this.size == x.length) {
+        grow();
+      }
+      int run = this.size++;
+      x[run] = (float) box.getX();
+      y[run] = (float) box.getY();
+      width[run] = (float) box.getWidth();
+      height[run] = (float) box.getHeight();
+      fontSize[run] = size;
+      strokingColor[run] = stroking;
+      nonStrokingColor[run] = nonStroking;
+      renderingMode[run] = (byte) mode.ordinal();
+      fontId[run] = font;
+
+      int offset = textOffsets[run];
+      int end = offset + runText.length();
+      if (end > text.length) {
+        text = Arrays.copyOf(text, Math.max(2 * text.length, end));
+      }
+      runText.getChars(0, runText.length(), text, offset);
+      textOffsets[run + 1] = end;
+      return this;
+    }
+
+    /**
+     * @param fontTable the table the runs' font ids refer to; pages built while no fonts are added
+     *     share one array of its fonts
+     */
+    public TextRunPage build(int pageIndex, FontTable fontTable) {
+      return new TextRunPage(pageIndex, this, fontTable.toArray());
+    }
+
+    public void clear() {
+      size = 0;
+    }
+
+    private void grow() {
+      int capacity = 2 * x.length;
+      x = Arrays.copyOf(x, capacity);
+      y = Arrays.copyOf(y, capacity);
+      width = Arrays.copyOf(width, capacity);
+      height = Arrays.copyOf(height, capacity);
+      fontSize = Arrays.copyOf(fontSize, capacity);
+      strokingColor = Arrays.copyOf(strokingColor, capacity);
+      nonStrokingColor = Arrays.copyOf(nonStrokingColor, capacity);
+      renderingMode = Arrays.copyOf(renderingMode, capacity);
+      fontId = Arrays.copyOf(fontId, capacity);
+      textOffsets = Arrays.copyOf(textOffsets, capacity + 1);
+    }
+  }
+}
@@ -1,19 +1,21 @@
 package pdfbox.sample;
 
-import java.awt.Shape;
 import java.awt.geom.AffineTransform;
 import java.awt.geom.Rectangle2D;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.OutputStreamWriter;
-import java.io.Writer;
+import java.io.InterruptedIOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
-import java.util.stream.Collectors;
-import org.apache.fontbox.util.BoundingBox;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 import org.apache.pdfbox.contentstream.operator.color.SetNonStrokingColor;
 import org.apache.pdfbox.contentstream.operator.color.SetNonStrokingColorN;
 import org.apache.pdfbox.contentstream.operator.color.SetNonStrokingColorSpace;
@@ -26,67 +28,401 @@ import org.apache.pdfbox.contentstream.operator.color.SetStrokingColorSpace;
 import org.apache.pdfbox.contentstream.operator.color.SetStrokingDeviceCMYKColor;
 import org.apache.pdfbox.contentstream.operator.color.SetStrokingDeviceGrayColor;
 import org.apache.pdfbox.contentstream.operator.color.SetStrokingDeviceRGBColor;
+import org.apache.pdfbox.io.MemoryUsageSetting;
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.pdmodel.PDPage;
 import org.apache.pdfbox.pdmodel.common.PDRectangle;
 import org.apache.pdfbox.pdmodel.font.PDFont;
-import org.apache.pdfbox.pdmodel.font.PDType3Font;
+import org.apache.pdfbox.pdmodel.graphics.state.PDGraphicsState;
 import org.apache.pdfbox.pdmodel.graphics.state.RenderingMode;
-import org.apache.pdfbox.text.PDFTextStripper;
 import org.apache.pdfbox.text.TextPosition;
 
-public class TextRunStripper extends PDFTextStripper {
+public class TextRunStripper extends PageTreeStripper {
+
+  // documents with fewer pages are not worth loading once per worker
+  static final int MIN_PARALLEL_PAGES = 16;
+
+  // strippers of stripPages per profile, one per processor may run at once
+  private static final Map<ExtractionProfile, TextRunStripperPool> POOLS = pools();
 
   // page wise state
   private AffineTransform flipAT;
   private AffineTransform rotateAT;
   private AffineTransform transAT;
 
-  private Map<TextPosition, RenderingMode> renderingMode;
-  private Map<TextPosition, Integer> strokingColor;
-  private Map<TextPosition, Integer> nonStrokingColor;
+  private final GlyphStateStore glyphState = new GlyphStateStore();
+  private final GlyphMetricsCache glyphMetrics = new GlyphMetricsCache();
+  private final GlyphBoundsCache glyphBounds = new GlyphBoundsCache();
+  private final RunBounds runBounds = new RunBounds();
+  private final ColorCache colors = new ColorCache();
+  private final Map<PDFont, FontDescriptor> fontDescriptors = new IdentityHashMap<>();
+  private PDFont lastFont;
+  private FontDescriptor lastFontDescriptor;
+  private boolean extractColors = true;
+  private boolean preciseGlyphBounds = Boolean.getBoolean("preciseGlyphBounds");
   private List<TextRun> textRuns;
+  private TextRunIndex.Builder indexBuilder;
+  private TextRunIndex textRunIndex;
+  private TextRunPage.Builder pageBuilder;
+  private TextRunPage textRunPage;
+
+  // null unless metrics are recorded, see MetricsRecorder
+  MetricsRecorder metrics;
+  private Metrics pageMetrics;
 
   // document state
-  private final List<List<TextRun>> pagedTextruns;
+  private FontTable fontTable = new FontTable();
+  private List<List<TextRun>> pagedTextruns;
+  private final TextRunListener listener;
+  private final ExtractionProfile profile;
 
   public TextRunStripper() throws IOException {
+    this(null);
+  }
+
+  /**
+   * @param listener receives each page's runs as soon as the page is stripped, instead of them
+   *     being collected into {@link #getPagedTextruns()}; may be null
+   */
+  public TextRunStripper(TextRunListener listener) throws IOException {
+    this(ExtractionProfile.FULL_STYLE, listener);
+  }
+
+  /**
+   * @param profile what to extract of each run; colour operators are only registered for {@link
+   *     ExtractionProfile#FULL_STYLE}
+   * @param listener see {@link #TextRunStripper(TextRunListener)}, may be null
+   */
+  public TextRunStripper(ExtractionProfile profile, TextRunListener listener) throws IOException {
     super();
+    this.profile = profile;
 
     setSuppressDuplicateOverlappingText(false);
-    addOperator(new SetStrokingColorSpace());
-    addOperator(new SetNonStrokingColorSpace());
-    addOperator(new SetStrokingDeviceCMYKColor());
-    addOperator(new SetNonStrokingDeviceCMYKColor());
-    addOperator(new SetNonStrokingDeviceRGBColor());
-    addOperator(new SetStrokingDeviceRGBColor());
-    addOperator(new SetNonStrokingDeviceGrayColor());
-    addOperator(new SetStrokingDeviceGrayColor());
-    addOperator(new SetStrokingColor());
-    addOperator(new SetStrokingColorN());
-    addOperator(new SetNonStrokingColor());
-    addOperator(new SetNonStrokingColorN());
+    if (profile.style) {
+      addOperator(new SetStrokingColorSpace());
+      addOperator(new SetNonStrokingColorSpace());
+      addOperator(new SetStrokingDeviceCMYKColor());
+      addOperator(new SetNonStrokingDeviceCMYKColor());
+      addOperator(new SetNonStrokingDeviceRGBColor());
+      addOperator(new SetStrokingDeviceRGBColor());
+      addOperator(new SetNonStrokingDeviceGrayColor());
+      addOperator(new SetStrokingDeviceGrayColor());
+      addOperator(new SetStrokingColor());
+      addOperator(new SetStrokingColorN());
+      addOperator(new SetNonStrokingColor());
+      addOperator(new SetNonStrokingColorN());
+    }
 
     pagedTextruns = new ArrayList<>();
+    this.listener = listener != null ? listener : (page, runs) -> pagedTextruns.add(runs);
   }
 
   public static List<List<TextRun>> processPdf(byte[] input) throws IOException {
+    return processPdf(DocumentSource.of(input));
+  }
+
+  public static List<List<TextRun>> processPdf(Path file, MemoryUsageSetting memUsageSetting)
+      throws IOException {
+    return processPdf(DocumentSource.of(file, memUsageSetting));
+  }
+
+  public static List<List<TextRun>> processPdf(DocumentSource source) throws IOException {
+    return processPdf(source, PageSelection.ALL);
+  }
+
+  public static List<List<TextRun>> processPdf(
+      Path file, MemoryUsageSetting memUsageSetting, PageSelection selection) throws IOException {
+    return processPdf(DocumentSource.of(file, memUsageSetting), selection);
+  }
+
+  /** @return the text runs of the selected pages, in page order */
+  public static List<List<TextRun>> processPdf(DocumentSource source, PageSelection selection)
+      throws IOException {
+    return processPdf(source, selection, ExtractionProfile.FULL_STYLE);
+  }
+
+  /** @return what {@code profile} extracts of the runs of the selected pages, in page order */
+  public static List<List<TextRun>> processPdf(
+      DocumentSource source, PageSelection selection, ExtractionProfile profile)
+      throws IOException {
+
+    MetricsRecorder metrics = MetricsRecorder.create(source.getName());
+    try (PDDocument document = MetricsRecorder.open(metrics, source)) {
+      List<List<TextRun>> pagedTextRuns =
+          stripPages(
+              document,
+              selection.pages(document.getNumberOfPages()),
+              metrics,
+              new FontTable(),
+              profile);
+      MetricsRecorder.finish(metrics);
+      return pagedTextRuns;
+    }
+  }
+
+  /**
+   * @return the text runs of the selected pages in page order, each page in columns of primitives
+   *     instead of as {@link TextRun}s
+   */
+  public static List<TextRunPage> textRunPages(DocumentSource source, PageSelection selection)
+      throws IOException {
+
+    MetricsRecorder metrics = MetricsRecorder.create(source.getName());
+    try (PDDocument document = MetricsRecorder.open(metrics, source)) {
+      int[] pages = selection.pages(document.getNumberOfPages());
+      List<TextRunPage> textRunPages = new ArrayList<>(pages.length);
+      TextRunStripperPool pool = POOLS.get(ExtractionProfile.FULL_STYLE);
+      TextRunStripper stripper = pool.acquire();
+      try {
+        stripper.metrics = metrics;
+        stripper.setColumnar(true);
+        for (int page : pages) {
+          stripper.stripPage(document, page);
+          textRunPages.add(stripper.getTextRunPage());
+        }
+      } finally {
+        stripper.setColumnar(false);
+        pool.release(stripper);
+      }
+      MetricsRecorder.finish(metrics);
+      return textRunPages;
+    }
+  }
+
+  public static PageResults pages(
+      Path file, MemoryUsageSetting memUsageSetting, PageSelection selection) throws IOException {
+    return pages(DocumentSource.of(file, memUsageSetting), selection);
+  }
+
+  /**
+   * Opens the document and strips each selected page only when the iteration reaches it. The
+   * caller closes the result, which closes the document.
+   */
+  public static PageResults pages(DocumentSource source, PageSelection selection)
+      throws IOException {
+    MetricsRecorder metrics = MetricsRecorder.create(source.getName());
+    return new PageResults(MetricsRecorder.open(metrics, source), selection, metrics);
+  }
+
+  public static void processPdf(byte[] input, TextRunListener listener) throws IOException {
+    processPdf(DocumentSource.of(input), listener);
+  }
+
+  public static void processPdf(
+      Path file, MemoryUsageSetting memUsageSetting, TextRunListener listener)
+      throws IOException {
+    processPdf(DocumentSource.of(file, memUsageSetting), listener);
+  }
+
+  /**
+   * Hands each page's runs to {@code listener} as soon as the page is stripped, so that only one
+   * page worth of runs is held by the stripper at a time.
+   */
+  public static void processPdf(DocumentSource source, TextRunListener listener)
+      throws IOException {
+    processPdf(source, PageSelection.ALL, listener);
+  }
+
+  /** Hands the runs of the selected pages to {@code listener}, in page order. */
+  public static void processPdf(
+      DocumentSource source, PageSelection selection, TextRunListener listener)
+      throws IOException {
 
-    try (PDDocument document = PDDocument.load(input)) {
-      TextRunStripper stripper = new TextRunStripper();
+    MetricsRecorder metrics = MetricsRecorder.create(source.getName());
+    try (PDDocument document = MetricsRecorder.open(metrics, source)) {
+      TextRunStripper stripper = new TextRunStripper(listener);
       stripper.setSortByPosition(true);
+      stripper.metrics = metrics;
+
+      for (int page : selection.pages(document.getNumberOfPages())) {
+        stripper.stripPage(document, page);
+      }
+      MetricsRecorder.finish(metrics);
+    }
+  }
+
+  public static List<List<TextRun>> processPdf(byte[] input, int parallelism)
+      throws IOException {
+    return processPdf(DocumentSource.of(input), parallelism);
+  }
+
+  public static List<List<TextRun>> processPdf(
+      Path file, MemoryUsageSetting memUsageSetting, int parallelism) throws IOException {
+    return processPdf(DocumentSource.of(file, memUsageSetting), parallelism);
+  }
+
+  /**
+   * Splits the page range across {@code parallelism} worker threads, each with its own stripper
+   * and its own document opened from {@code source}. Small documents are stripped sequentially.
+   *
+   * @return the text runs of every page, in page order
+   */
+  public static List<List<TextRun>> processPdf(DocumentSource source, int parallelism)
+      throws IOException {
+    return processPdf(source, PageSelection.ALL, parallelism);
+  }
+
+  /** Like {@link #processPdf(DocumentSource, int)}, for the selected pages only. */
+  public static List<List<TextRun>> processPdf(
+      DocumentSource source, PageSelection selection, int parallelism) throws IOException {
+
+    int[] pages;
+    MetricsRecorder metrics = MetricsRecorder.create(source.getName());
+    try (PDDocument document = MetricsRecorder.open(metrics, source)) {
+      pages = selection.pages(document.getNumberOfPages());
+      if (parallelism < 2 || pages.length < MIN_PARALLEL_PAGES) {
+        List<List<TextRun>> pagedTextRuns = stripPages(document, pages, metrics);
+        MetricsRecorder.finish(metrics);
+        return pagedTextRuns;
+      }
+    }
+
+    ForkJoinPool pool = new ForkJoinPool(parallelism);
+    try {
+      List<List<TextRun>> pagedTextRuns = processPdf(source, pages, parallelism, pool, metrics);
+      MetricsRecorder.finish(metrics);
+      return pagedTextRuns;
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  // one task per chunk of pages on executor, each opening its own document
+  static List<List<TextRun>> processPdf(
+      DocumentSource source,
+      int[] pages,
+      int chunks,
+      ExecutorService executor,
+      MetricsRecorder metrics)
+      throws IOException {
+
+    int chunkSize = (pages.length + chunks - 1) / chunks;
+    List<Callable<List<List<TextRun>>>> tasks = new ArrayList<>();
+    for (int from = 0; from < pages.length; from += chunkSize) {
+      int[] chunk = Arrays.copyOfRange(pages, from, Math.min(from + chunkSize, pages.length));
+      tasks.add(
+          () -> {
+            try (PDDocument document = MetricsRecorder.open(metrics, source)) {
+              return stripPages(document, chunk, metrics);
+            }
+          });
+    }
+
+    // each chunk numbers its fonts from 0, renumber them in page order as a single stripper would
+    FontTable fontTable = new FontTable();
+    List<List<TextRun>> pagedTextruns = new ArrayList<>(pages.length);
+    try {
+      for (Future<List<List<TextRun>>> result : executor.invokeAll(tasks)) {
+        for (List<TextRun> textRuns : result.get()) {
+          pagedTextruns.add(renumberFonts(textRuns, fontTable));
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("interrupted while stripping pages");
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      }
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new IOException(cause);
+    }
+    return pagedTextruns;
+  }
+
+  static List<List<TextRun>> stripPages(
+      PDDocument document, int[] pages, MetricsRecorder metrics) throws IOException {
+    return stripPages(document, pages, metrics, new FontTable(), ExtractionProfile.FULL_STYLE);
+  }
+
+  static List<List<TextRun>> stripPages(
+      PDDocument document,
+      int[] pages,
+      MetricsRecorder metrics,
+      FontTable fontTable,
+      ExtractionProfile profile)
+      throws IOException {
+    TextRunStripperPool pool = POOLS.get(profile);
+    TextRunStripper stripper = pool.acquire();
+    try {
+      stripper.metrics = metrics;
+      stripper.setFontTable(fontTable);
 
-      for (int page = 0; page < document.getNumberOfPages(); ++page) {
+      for (int page : pages) {
         stripper.stripPage(document, page);
       }
 
       return stripper.getPagedTextruns();
+    } finally {
+      pool.release(stripper);
     }
   }
 
-  private void stripPage(PDDocument document, int pageNum) throws IOException {
+  // the runs with their fonts' ids in fontTable
+  private static List<TextRun> renumberFonts(List<TextRun> textRuns, FontTable fontTable) {
+    List<TextRun> renumbered = new ArrayList<>(textRuns.size());
+    for (TextRun run : textRuns) {
+      int fontId = fontTable.add(run.font);
+      renumbered.add(
+          fontId == run.fontId
+              ? run
+              : new TextRun(
+                  run.text,
+                  run.box,
+                  run.strokingColor,
+                  run.nonStrokingColor,
+                  run.renderingMode,
+                  run.fontSize,
+                  run.font,
+                  fontId));
+    }
+    return renumbered;
+  }
 
-    PDPage pdPage = document.getPage(pageNum);
+  private static Map<ExtractionProfile, TextRunStripperPool> pools() {
+    Map<ExtractionProfile, TextRunStripperPool> pools = new EnumMap<>(ExtractionProfile.class);
+    for (ExtractionProfile profile : ExtractionProfile.values()) {
+      pools.put(
+          profile, new TextRunStripperPool(Runtime.getRuntime().availableProcessors(), profile));
+    }
+    return pools;
+  }
+
+  void stripPage(PDDocument document, int pageNum) throws IOException {
+    Metrics page = metrics != null ? metrics.startPage() : null;
+    long start = page != null ? System.nanoTime() : 0;
+    pageMetrics = page;
+
+    preparePage(document.getPage(pageNum));
+
+    setPageTree(PageSelection.pageTree(document, pageNum));
+    try {
+      writeText(document, NullWriter.INSTANCE);
+    } finally {
+      setPageTree(null);
+      pageMetrics = null;
+    }
+
+    textRunIndex = indexBuilder != null ? indexBuilder.build() : null;
+    if (page != null) {
+      page.add(Metrics.Metric.INTERPRET_NANOS, System.nanoTime() - start);
+      metrics.endPage(pageNum, page);
+    }
+
+    List<TextRun> pageTextRuns = textRuns;
+    textRuns = null;
+    if (pageBuilder != null) {
+      textRunPage = pageBuilder.build(pageNum, fontTable);
+      pageTextRuns = textRunPage.asList();
+    }
+    listener.onPage(pageNum, pageTextRuns);
+  }
+
+  // set up the page transforms and per page state
+  void preparePage(PDPage pdPage) {
     PDRectangle cropBox = pdPage.getCropBox();
 
     // flip y-axis
@@ -120,29 +456,30 @@ public class TextRunStripper extends PDFTextStripper {
         AffineTransform.getTranslateInstance(-cropBox.getLowerLeftX(), cropBox.getLowerLeftY());
 
     // init state for page
-    renderingMode = new HashMap<>();
-    strokingColor = new HashMap<>();
-    nonStrokingColor = new HashMap<>();
-    textRuns = new ArrayList<>();
-
-    setStartPage(pageNum + 1);
-    setEndPage(pageNum + 1);
-
-    Writer dummy = new OutputStreamWriter(new ByteArrayOutputStream());
-    writeText(document, dummy);
-
-    pagedTextruns.add(textRuns);
+    runBounds.setPage(flipAT, rotateAT);
+    glyphState.clear();
+    textRuns = pageBuilder == null ? new ArrayList<>() : null;
+    if (indexBuilder != null) {
+      indexBuilder.clear();
+    }
+    if (pageBuilder != null) {
+      pageBuilder.clear();
+    }
   }
 
   @Override
   protected void processTextPosition(TextPosition text) {
 
-    renderingMode.put(text, getGraphicsState().getTextState().getRenderingMode());
-    try {
-      strokingColor.put(text, getGraphicsState().getStrokingColor().toRGB());
-      nonStrokingColor.put(text, getGraphicsState().getNonStrokingColor().toRGB());
-    } catch (IOException e) {
-      e.printStackTrace();
+    if (profile.style) {
+      PDGraphicsState graphicsState = getGraphicsState();
+      glyphState.add(
+          text,
+          graphicsState.getTextState().getRenderingMode(),
+          graphicsState.getStrokingColor(),
+          graphicsState.getNonStrokingColor());
+    }
+    if (pageMetrics != null) {
+      pageMetrics.increment(Metrics.Metric.GLYPHS);
     }
 
     super.processTextPosition(text);
@@ -150,64 +487,215 @@ public class TextRunStripper extends PDFTextStripper {
 
   @Override
   protected void writeString(String string, List<TextPosition> textPositions) {
-    List<Rectangle2D> bounds =
-        textPositions.stream()
-            .map(this::getBounds)
-            .filter(Objects::nonNull)
-            .collect(Collectors.toList());
+    long start = pageMetrics != null ? System.nanoTime() : 0;
+    Rectangle2D box = profile.boxes ? getBounds(textPositions) : new Rectangle2D.Double();
+    if (pageMetrics != null) {
+      pageMetrics.add(Metrics.Metric.BOUNDS_NANOS, System.nanoTime() - start);
+      pageMetrics.increment(Metrics.Metric.WRITE_STRING_CALLS);
+    }
 
-    if (bounds.size() > 0) {
-      textRuns.add(
-          new TextRun(
-              string,
-              union(bounds),
-              strokingColor.get(textPositions.get(0)),
-              nonStrokingColor.get(textPositions.get(0)),
-              renderingMode.get(textPositions.get(0)),
-              textPositions.get(0).getFontSize(),
-              textPositions.get(0).getFont()));
+    if (box != null) {
+      TextPosition first = textPositions.get(0);
+      RenderingMode renderingMode = RenderingMode.FILL;
+      int stroking = 0;
+      int nonStroking = 0;
+      // a first glyph not recorded by showGlyph keeps FILL and colours 0
+      int glyph = profile.style ? glyphState.indexOf(first) : -1;
+      if (glyph >= 0) {
+        renderingMode = glyphState.renderingMode(glyph);
+        // only the first glyph's colours are kept, convert them only
+        if (extractColors) {
+          try {
+            stroking = colors.toRGB(glyphState.strokingColor(glyph));
+            nonStroking = colors.toRGB(glyphState.nonStrokingColor(glyph));
+          } catch (IOException e) {
+            e.printStackTrace();
+          }
+        }
+      }
+      FontDescriptor font = fontDescriptor(first.getFont());
+      if (pageBuilder != null) {
+        pageBuilder.add(
+            string,
+            box,
+            stroking,
+            nonStroking,
+            renderingMode,
+            first.getFontSize(),
+            fontTable.add(font));
+      } else {
+        textRuns.add(
+            new TextRun(
+                string,
+                box,
+                stroking,
+                nonStroking,
+                renderingMode,
+                first.getFontSize(),
+                font,
+                fontTable.add(font)));
+      }
+      if (indexBuilder != null) {
+        indexBuilder.add(box);
+      }
     }
   }
 
-  private static Rectangle2D union(List<Rectangle2D> bounds) {
-    Rectangle2D result = bounds.get(0);
-    for (int i = 1; i < bounds.size(); ++i) {
-      result = result.createUnion(bounds.get(i));
+  private FontDescriptor fontDescriptor(PDFont font) {
+    if (font != lastFont) {
+      FontDescriptor descriptor = fontDescriptors.get(font);
+      if (descriptor == null) {
+        if (fontDescriptors.size() == GlyphMetricsCache.MAX_FONTS) {
+          fontDescriptors.clear();
+        }
+        descriptor = FontDescriptor.of(font);
+        fontDescriptors.put(font, descriptor);
+      }
+      lastFont = font;
+      lastFontDescriptor = descriptor;
     }
-    return result;
+    return lastFontDescriptor;
   }
 
-  private Rectangle2D getBounds(TextPosition text) {
-    try {
-      AffineTransform at = text.getTextMatrix().createAffineTransform();
-
-      PDFont font = text.getFont();
-      BoundingBox bbox = font.getBoundingBox();
+  /** @return the union of the glyph bounds, or null if no glyph has bounds */
+  Rectangle2D getBounds(List<TextPosition> textPositions) {
+    runBounds.reset();
+    if (preciseGlyphBounds) {
+      for (TextPosition text : textPositions) {
+        try {
+          GlyphBoundsCache.FontBounds fontBounds = glyphBounds.get(text.getFont());
+          runBounds.addOutline(text, fontBounds, text.getCharacterCodes()[0]);
+        } catch (IOException e) {
+          e.printStackTrace();
+        }
+      }
+      if (runBounds.count() > 0) {
+        return runBounds.toRectangle();
+      }
+      // no glyph with an outline, e.g. only spaces, fall back to the advance widths
+    }
 
-      // advance width, bbox height (glyph space)
-      float xadvance = font.getWidth(text.getCharacterCodes()[0]); // todo: should iterate all chars
-      Rectangle2D.Float rect =
-          new Rectangle2D.Float(0, bbox.getLowerLeftY(), xadvance, bbox.getHeight());
+    for (TextPosition text : textPositions) {
+      try {
+        GlyphMetricsCache.FontMetrics metrics = glyphMetrics.get(text.getFont());
 
-      if (font instanceof PDType3Font) {
-        // bbox and font matrix are unscaled
-        at.concatenate(font.getFontMatrix().createAffineTransform());
-      } else {
-        // bbox and font matrix are already scaled to 1000
-        at.scale(1 / 1000f, 1 / 1000f);
+        // advance width, bbox height (glyph space)
+        float xadvance = metrics.width(text.getCharacterCodes()[0]); // todo: should iterate all chars
+        runBounds.add(text, metrics, xadvance);
+      } catch (IOException e) {
+        e.printStackTrace();
       }
-      Shape s = at.createTransformedShape(rect);
-      s = flipAT.createTransformedShape(s);
-      s = rotateAT.createTransformedShape(s);
-
-      return s.getBounds2D();
-    } catch (IOException e) {
-      e.printStackTrace();
-      return null;
     }
+    return runBounds.count() > 0 ? runBounds.toRectangle() : null;
   }
 
   public List<List<TextRun>> getPagedTextruns() {
     return pagedTextruns;
   }
+
+  /** @return the fonts the runs' {@link TextRun#fontId}s refer to */
+  public FontTable getFontTable() {
+    return fontTable;
+  }
+
+  /**
+   * Numbers the fonts of the following runs in {@code fontTable} instead of the stripper's own
+   * table, until {@link #reset()}; to share one table among the strippers of a document.
+   */
+  void setFontTable(FontTable fontTable) {
+    this.fontTable = fontTable;
+  }
+
+  /**
+   * Forgets the last document, so that the stripper can strip another with little setup: starts a
+   * new list of paged runs and font table, and drops the document, its metrics and the caches
+   * keyed by its fonts and colour spaces. Settings and the listener are kept.
+   *
+   * <p>The glyphs of the last page are dropped too, but PDFStreamEngine keeps its last page, which
+   * it offers no way to clear: that page, with its resources and fonts, stays reachable until the
+   * next page is stripped.
+   */
+  public void reset() {
+    pagedTextruns = new ArrayList<>();
+    // PDFTextStripper clears the glyphs only when the next document starts
+    if (charactersByArticle != null) {
+      charactersByArticle.clear();
+    }
+    fontTable = new FontTable();
+    fontDescriptors.clear();
+    lastFont = null;
+    lastFontDescriptor = null;
+    document = null;
+    metrics = null;
+    pageMetrics = null;
+    setPageTree(null);
+    textRuns = null;
+    textRunIndex = null;
+    textRunPage = null;
+    glyphState.clear();
+    glyphMetrics.clear();
+    glyphBounds.clear();
+    colors.clear();
+  }
+
+  /** @return the spatial index of the last page's runs, null unless {@link #setIndexed} */
+  public TextRunIndex getTextRunIndex() {
+    return textRunIndex;
+  }
+
+  public boolean isIndexed() {
+    return indexBuilder != null;
+  }
+
+  /** Builds a {@link TextRunIndex} of each page's runs while stripping it. */
+  public void setIndexed(boolean indexed) {
+    indexBuilder = indexed ? new TextRunIndex.Builder() : null;
+    textRunIndex = null;
+  }
+
+  /** @return the last page's runs in columns, null unless {@link #setColumnar} */
+  public TextRunPage getTextRunPage() {
+    return textRunPage;
+  }
+
+  public boolean isColumnar() {
+    return pageBuilder != null;
+  }
+
+  /**
+   * Collects each page's runs into a {@link TextRunPage} instead of one {@link TextRun} per run.
+   * The listener then gets {@link TextRunPage#asList()} of the page.
+   */
+  public void setColumnar(boolean columnar) {
+    pageBuilder = columnar ? new TextRunPage.Builder() : null;
+    textRunPage = null;
+  }
+
+  public ExtractionProfile getProfile() {
+    return profile;
+  }
+
+  public boolean isExtractColors() {
+    return extractColors;
+  }
+
+  /**
+   * Whether runs get the RGB values of their stroking and non-stroking colours, true by default.
+   * Without, both are 0 and colours are never converted.
+   */
+  public void setExtractColors(boolean extractColors) {
+    this.extractColors = extractColors;
+  }
+
+  public boolean isPreciseGlyphBounds() {
+    return preciseGlyphBounds;
+  }
+
+  /**
+   * Bounds runs by their glyphs' outlines instead of the advance widths and the font's bbox
+   * height. Defaults to the {@code preciseGlyphBounds} system property.
+   */
+  public void setPreciseGlyphBounds(boolean preciseGlyphBounds) {
+    this.preciseGlyphBounds = preciseGlyphBounds;
+  }
 }
@@ -0,0 +1,49 @@
+package pdfbox.sample;
+
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Idle {@link TextRunStripper}s, sorting by position and collecting their runs, for reuse from
+ * one document to the next. Constructing a stripper registers its operators and loads the glyph
+ * list, which a pooled one does once.
+ *
+ * <p>A stripper is reset when released, so an idle one holds no runs, glyphs or font caches of the
+ * documents it stripped; only the last page it stripped stays reachable, see {@link
+ * TextRunStripper#reset()}. Acquiring never waits, it creates a stripper when none is idle.
+ */
+final class TextRunStripperPool {
+
+  private final BlockingQueue<TextRunStripper> idle;
+  private final ExtractionProfile profile;
+
+  /**
+   * @param maxIdle strippers kept idle at most, e.g. the number of threads stripping
+   * @param profile of the strippers created
+   */
+  TextRunStripperPool(int maxIdle, ExtractionProfile profile) {
+    idle = new ArrayBlockingQueue<>(maxIdle);
+    this.profile = profile;
+  }
+
+  TextRunStripper acquire() throws IOException {
+    TextRunStripper stripper = idle.poll();
+    if (stripper == null) {
+      stripper = new TextRunStripper(profile, null);
+      stripper.setSortByPosition(true);
+    }
+    return stripper;
+  }
+
+  /** Resets {@code stripper} and keeps it unless enough are idle already. */
+  void release(TextRunStripper stripper) {
+    stripper.reset();
+    idle.offer(stripper);
+  }
+
+  /** @return the number of idle strippers */
+  int getIdle() {
+    return idle.size();
+  }
+}
@@ -1,14 +1,39 @@
-/*
- * This Java source file was generated by the Gradle 'init' task.
- */
 package pdfbox.sample;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
 import org.junit.jupiter.api.Test;
-import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.io.TempDir;
 
 class AppTest {
-    @Test void appHasAGreeting() {
-        App classUnderTest = new App();
-        assertNotNull(classUnderTest.getGreeting(), "app should have a greeting");
+
+  @Test
+  void printsSizeAndTextRuns(@TempDir Path dir) throws Exception {
+    byte[] input = Corpus.generate(Corpus.Kind.MANY_FONTS);
+    Path file = Files.write(dir.resolve("many-fonts.pdf"), input);
+
+    StringBuilder expected = new StringBuilder();
+    expected.append(input.length).append(System.lineSeparator());
+    for (List<TextRun> textRuns : TextRunStripper.processPdf(input)) {
+      for (TextRun run : textRuns) {
+        expected.append(run.text).append(System.lineSeparator());
+      }
+    }
+
+    PrintStream stdout = System.out;
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    System.setOut(new PrintStream(output, true, "UTF-8"));
+    try {
+      App.main(new String[] {file.toString()});
+    } finally {
+      System.setOut(stdout);
     }
+    assertEquals(expected.toString(), new String(output.toByteArray(), StandardCharsets.UTF_8));
+  }
 }
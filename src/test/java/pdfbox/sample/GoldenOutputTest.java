@@ -0,0 +1,256 @@
+package pdfbox.sample;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.multipdf.PDFMergerUtility;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Compares the output of the strippers on the {@link Corpus} documents with that of the code they
+ * replaced, and the faster paths with the plain ones.
+ *
+ * <p>The digests were taken from the output of the classes as they were before any of the
+ * performance work, with line separators normalised to {@code \n}.
+ */
+class GoldenOutputTest {
+
+  private static final Map<Corpus.Kind, String> TEXT_RUNS = new EnumMap<>(Corpus.Kind.class);
+  private static final Map<Corpus.Kind, String> PLAIN_TEXT = new EnumMap<>(Corpus.Kind.class);
+  private static final Map<Corpus.Kind, String> COLOR_TEXT = new EnumMap<>(Corpus.Kind.class);
+
+  static {
+    TEXT_RUNS.put(
+        Corpus.Kind.TEXT_DENSE, "81964d9265a2d3a41fdb5bc261d0b596551903a7974736f701f813eb57ffc5b5");
+    TEXT_RUNS.put(
+        Corpus.Kind.MANY_FONTS, "71ee5bfa79958de14f5078d58369ca113688044c10effc2cf4915cf978da161b");
+    TEXT_RUNS.put(
+        Corpus.Kind.ROTATED, "48674513d10656fc492d7c3d00e707068f9071ed61238d2079f9e128bc2144ae");
+    TEXT_RUNS.put(
+        Corpus.Kind.TYPE3, "06c7f007a18668ba0904f60bfe81d6791fa6f7f622bb783dd0c9243186fd3895");
+
+    PLAIN_TEXT.put(
+        Corpus.Kind.TEXT_DENSE, "35204323f87ecec02517f3c0ff3f6263fc40992871565a21641954a37f0ee8eb");
+    PLAIN_TEXT.put(
+        Corpus.Kind.MANY_FONTS, "a879c81363097cfb0ea42620f0facbe3a3ce963d3056960a4037ad33f9281762");
+    PLAIN_TEXT.put(
+        Corpus.Kind.ROTATED, "ddbfaf1d84bda7aa1d04d0173f58d77bdac1d50b9209b72455527c67531a4c32");
+    PLAIN_TEXT.put(
+        Corpus.Kind.TYPE3, "b4e2f2c1485fa3fbecafd27858805db0efdbee6b27e076173014ee2fab4817ac");
+
+    COLOR_TEXT.put(
+        Corpus.Kind.TEXT_DENSE, "b0ba8f0e7a25eb2746fd7b3094ef129f80b4494bb48031ffd738fc72a844e93f");
+    COLOR_TEXT.put(
+        Corpus.Kind.MANY_FONTS, "ab85adad5e90cd258e2d668de8fc8c2719d78122892ca4e311225065d22d9fc6");
+    COLOR_TEXT.put(
+        Corpus.Kind.ROTATED, "ae5cc122e6852b42ca853544c069fae487fbd18ff6285571c1e24bd18736ceb6");
+    COLOR_TEXT.put(
+        Corpus.Kind.TYPE3, "b8ab27178b3fa7e9fb8889c6cfbb1ea1ff1fa61530d3288d8b61e7142350a0c1");
+  }
+
+  @Test
+  void textRunsMatchBaseline() throws IOException {
+    for (Corpus.Kind kind : Corpus.Kind.values()) {
+      List<List<TextRun>> pagedTextRuns = TextRunStripper.processPdf(Corpus.generate(kind));
+      assertEquals(TEXT_RUNS.get(kind), sha256(format(pagedTextRuns)), kind.name());
+    }
+  }
+
+  @Test
+  void plainTextMatchesBaseline() throws IOException {
+    for (Corpus.Kind kind : Corpus.Kind.values()) {
+      byte[] input = Corpus.generate(kind);
+      String text = captureStdout(() -> ExtractTextSimple.processPdf(input));
+      assertEquals(PLAIN_TEXT.get(kind), sha256(text), kind.name());
+    }
+  }
+
+  @Test
+  void colorTextMatchesBaseline() throws IOException {
+    for (Corpus.Kind kind : Corpus.Kind.values()) {
+      byte[] input = Corpus.generate(kind);
+      String text = captureStdout(() -> ColorTextStripper.processPdf(input));
+      assertEquals(COLOR_TEXT.get(kind), sha256(text), kind.name());
+    }
+  }
+
+  @Test
+  void parallelColorTextMatchesSequential(@TempDir Path dir) throws IOException {
+    MemoryUsageSetting memUsageSetting = MemoryUsageSetting.setupMainMemoryOnly();
+    for (Corpus.Kind kind : Corpus.Kind.values()) {
+      // twice the pages, so that the document is long enough to be stripped in parallel
+      Path file = Files.write(dir.resolve(kind + ".pdf"), twice(Corpus.generate(kind)));
+      StringWriter sequential = new StringWriter();
+      ColorTextStripper.processPdf(file, memUsageSetting, sequential);
+      StringWriter parallel = new StringWriter();
+      ColorTextStripper.processPdf(file, memUsageSetting, PageSelection.ALL, parallel, 3);
+      assertEquals(sequential.toString(), parallel.toString(), kind.name());
+    }
+  }
+
+  @Test
+  void parallelTextRunsMatchSequential() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(3);
+    try {
+      for (Corpus.Kind kind : Corpus.Kind.values()) {
+        DocumentSource source = DocumentSource.of(Corpus.generate(kind));
+        int[] pages = PageSelection.ALL.pages(Corpus.PAGES);
+        List<List<TextRun>> sequential = TextRunStripper.processPdf(source);
+        List<List<TextRun>> parallel =
+            TextRunStripper.processPdf(source, pages, 3, executor, null);
+        assertEquals(formatWithFonts(sequential), formatWithFonts(parallel), kind.name());
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  void selectedPagesMatchWholeDocument() throws IOException {
+    for (Corpus.Kind kind : Corpus.Kind.values()) {
+      DocumentSource source = DocumentSource.of(Corpus.generate(kind));
+      List<List<TextRun>> all = TextRunStripper.processPdf(source);
+      List<List<TextRun>> selected =
+          TextRunStripper.processPdf(source, PageSelection.range(3, 7));
+      assertEquals(format(all.subList(3, 7)), format(selected), kind.name());
+    }
+  }
+
+  @Test
+  void textBoxesProfileMatchesFullStyle() throws IOException {
+    for (Corpus.Kind kind : Corpus.Kind.values()) {
+      DocumentSource source = DocumentSource.of(Corpus.generate(kind));
+      List<List<TextRun>> full =
+          TextRunStripper.processPdf(source, PageSelection.ALL, ExtractionProfile.FULL_STYLE);
+      List<List<TextRun>> boxes =
+          TextRunStripper.processPdf(source, PageSelection.ALL, ExtractionProfile.TEXT_BOXES);
+      assertEquals(formatTextAndBoxes(full), formatTextAndBoxes(boxes), kind.name());
+    }
+  }
+
+  @Test
+  void columnarPagesMatchTextRuns() throws IOException {
+    for (Corpus.Kind kind : Corpus.Kind.values()) {
+      DocumentSource source = DocumentSource.of(Corpus.generate(kind));
+      List<List<TextRun>> pagedTextRuns = TextRunStripper.processPdf(source);
+      List<List<TextRun>> columnar = new ArrayList<>();
+      for (TextRunPage page : TextRunStripper.textRunPages(source, PageSelection.ALL)) {
+        columnar.add(page.asList());
+      }
+      // the columns keep floats
+      assertEquals(formatAsFloats(pagedTextRuns), formatAsFloats(columnar), kind.name());
+    }
+  }
+
+  // one line per run, as the baseline digests were taken
+  static String format(List<List<TextRun>> pagedTextRuns) {
+    StringBuilder builder = new StringBuilder();
+    for (int page = 0; page < pagedTextRuns.size(); ++page) {
+      for (TextRun run : pagedTextRuns.get(page)) {
+        builder.append(page).append(' ').append(run.text);
+        builder.append(' ').append(run.box.getX()).append(' ').append(run.box.getY());
+        builder.append(' ').append(run.box.getWidth()).append(' ').append(run.box.getHeight());
+        builder.append(' ').append(run.strokingColor).append(' ').append(run.nonStrokingColor);
+        builder.append(' ').append(run.renderingMode).append(' ').append(run.fontSize);
+        builder.append('\n');
+      }
+    }
+    return builder.toString();
+  }
+
+  private static String formatWithFonts(List<List<TextRun>> pagedTextRuns) {
+    StringBuilder builder = new StringBuilder();
+    for (List<TextRun> textRuns : pagedTextRuns) {
+      for (TextRun run : textRuns) {
+        builder.append(run.fontId).append(' ').append(run.font).append('\n');
+      }
+    }
+    return format(pagedTextRuns) + builder;
+  }
+
+  private static String formatTextAndBoxes(List<List<TextRun>> pagedTextRuns) {
+    StringBuilder builder = new StringBuilder();
+    for (List<TextRun> textRuns : pagedTextRuns) {
+      for (TextRun run : textRuns) {
+        builder.append(run.text).append(' ').append(run.box).append(' ').append(run.font);
+        builder.append(' ').append(run.fontSize).append('\n');
+      }
+    }
+    return builder.toString();
+  }
+
+  static String formatAsFloats(List<List<TextRun>> pagedTextRuns) {
+    StringBuilder builder = new StringBuilder();
+    for (List<TextRun> textRuns : pagedTextRuns) {
+      for (TextRun run : textRuns) {
+        builder.append(run.text);
+        builder.append(' ').append((float) run.box.getX());
+        builder.append(' ').append((float) run.box.getY());
+        builder.append(' ').append((float) run.box.getWidth());
+        builder.append(' ').append((float) run.box.getHeight());
+        builder.append(' ').append(run.strokingColor).append(' ').append(run.nonStrokingColor);
+        builder.append(' ').append(run.renderingMode).append(' ').append(run.fontSize);
+        builder.append(' ').append(run.fontId).append(' ').append(run.font).append('\n');
+      }
+    }
+    return builder.toString();
+  }
+
+  private static byte[] twice(byte[] input) throws IOException {
+    try (PDDocument document = PDDocument.load(input);
+        PDDocument copy = PDDocument.load(input)) {
+      new PDFMergerUtility().appendDocument(document, copy);
+      ByteArrayOutputStream output = new ByteArrayOutputStream();
+      document.save(output);
+      return output.toByteArray();
+    }
+  }
+
+  interface Output {
+    void write() throws IOException;
+  }
+
+  private static String captureStdout(Output output) throws IOException {
+    PrintStream stdout = System.out;
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    System.setOut(new PrintStream(bytes, true, "UTF-8"));
+    try {
+      output.write();
+    } finally {
+      System.out.flush();
+      System.setOut(stdout);
+    }
+    return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+  }
+
+  private static String sha256(String text) {
+    try {
+      MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      byte[] hash = digest.digest(text.replace("\r\n", "\n").getBytes(StandardCharsets.UTF_8));
+      StringBuilder hex = new StringBuilder();
+      for (byte b : hash) {
+        hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+      }
+      return hex.toString();
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+}
@@ -0,0 +1,29 @@
+package pdfbox.sample;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class TextRunCacheTest {
+
+  @Test
+  void hitsMatchMisses(@TempDir Path dir) throws IOException {
+    TextRunCache cache = new TextRunCache(dir, TextRunCache.DEFAULT_MAX_BYTES);
+    for (Corpus.Kind kind : Corpus.Kind.values()) {
+      byte[] input = Corpus.generate(kind);
+      List<List<TextRun>> missed = cache.processPdf(input);
+      List<List<TextRun>> hit = cache.processPdf(input);
+      // boxes included, both single precision
+      assertEquals(GoldenOutputTest.format(missed), GoldenOutputTest.format(hit), kind.name());
+      assertEquals(
+          GoldenOutputTest.formatAsFloats(TextRunStripper.processPdf(input)),
+          GoldenOutputTest.formatAsFloats(missed),
+          kind.name());
+    }
+    assertEquals(Corpus.Kind.values().length, cache.getDocumentHits());
+  }
+}
@@ -0,0 +1,70 @@
+package pdfbox.sample;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.awt.geom.Rectangle2D;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.apache.pdfbox.pdmodel.graphics.state.RenderingMode;
+import org.junit.jupiter.api.Test;
+
+class TextRunCodecTest {
+
+  @Test
+  void roundTrip() throws IOException {
+    for (Corpus.Kind kind : Corpus.Kind.values()) {
+      List<List<TextRun>> pagedTextRuns = TextRunStripper.processPdf(Corpus.generate(kind));
+      List<List<TextRun>> decoded = TextRunDecoder.decode(ByteBuffer.wrap(encode(pagedTextRuns)));
+      // boxes are stored as floats
+      assertEquals(
+          GoldenOutputTest.formatAsFloats(pagedTextRuns),
+          GoldenOutputTest.formatAsFloats(decoded),
+          kind.name());
+    }
+  }
+
+  @Test
+  void truncatedPageBlock() throws IOException {
+    List<List<TextRun>> pagedTextRuns =
+        TextRunStripper.processPdf(Corpus.generate(Corpus.Kind.MANY_FONTS));
+    byte[] encoded = encode(pagedTextRuns.subList(0, 1));
+    // past the header every cut falls inside the only page block
+    for (int length = 9; length < encoded.length; ++length) {
+      ByteBuffer truncated = ByteBuffer.wrap(Arrays.copyOf(encoded, length));
+      assertThrows(IOException.class, () -> TextRunDecoder.decode(truncated));
+    }
+  }
+
+  @Test
+  void corruptRenderingMode() throws IOException {
+    byte[] encoded = encode(singleRun());
+    // the block ends with the rendering mode, font id, text length and the one byte text
+    encoded[encoded.length - 4] = (byte) RenderingMode.values().length;
+    assertThrows(IOException.class, () -> TextRunDecoder.decode(ByteBuffer.wrap(encoded)));
+  }
+
+  @Test
+  void corruptFontId() throws IOException {
+    byte[] encoded = encode(singleRun());
+    encoded[encoded.length - 3] = 1;
+    assertThrows(IOException.class, () -> TextRunDecoder.decode(ByteBuffer.wrap(encoded)));
+  }
+
+  private static List<List<TextRun>> singleRun() {
+    FontDescriptor font = FontDescriptor.of("F", null, 0, false, false, false, false, 0, 0);
+    TextRun run =
+        new TextRun("a", new Rectangle2D.Float(1, 2, 3, 4), 0, 0, RenderingMode.FILL, 12, font, 0);
+    return Collections.singletonList(Collections.singletonList(run));
+  }
+
+  private static byte[] encode(List<List<TextRun>> pagedTextRuns) throws IOException {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    TextRunEncoder.encode(pagedTextRuns, output);
+    return output.toByteArray();
+  }
+}